@@ -0,0 +1,98 @@
+package com.v.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.events.DepositRequestedEvent;
+import com.v.core.events.WithdrawalRequestedEvent;
+import com.v.core.serialization.ContentTypeDelegatingDeserializer;
+import com.v.core.serialization.EventBinarySerializer;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+// Serializes and deserializes every core event with the JSON and the binary codec. Deserialization always
+// goes through ContentTypeDelegatingDeserializer, which is what the consumers are configured with.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    private static final String TOPIC = "benchmark-topic";
+
+    @Param({"ProductCreatedEvent", "DepositRequestedEvent", "WithdrawalRequestedEvent"})
+    public String event;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private Object value;
+    private Serializer<Object> serializer;
+    private Deserializer<Object> deserializer;
+    private byte[] serialized;
+    private Headers serializedHeaders;
+
+    @Setup
+    public void setUp() {
+        value = switch (event) {
+            case "ProductCreatedEvent" -> new ProductCreatedEvent("0f8fad5b-d9cb-469f-a165-70867728950e",
+                    "iPhone 11 128GB Black", new BigDecimal("600.99"), 3);
+            case "DepositRequestedEvent" -> new DepositRequestedEvent("7c9e6679-7425-40de-944b-e07fc1f90ae7",
+                    "a3bb189e-8bf9-3888-9912-ace4e6543002", new BigDecimal("1250.50"));
+            case "WithdrawalRequestedEvent" -> new WithdrawalRequestedEvent("7c9e6679-7425-40de-944b-e07fc1f90ae7",
+                    "a3bb189e-8bf9-3888-9912-ace4e6543002", new BigDecimal("1250.50"));
+            default -> throw new IllegalArgumentException(event);
+        };
+
+        serializer = "binary".equals(format) ? new EventBinarySerializer() : new JsonSerializer<>();
+
+        // same settings as the consumers: no type headers, a default type and the trusted core packages
+        Map<String, Object> config = new HashMap<>();
+        config.put(ContentTypeDelegatingDeserializer.JSON_DELEGATE, JsonDeserializer.class);
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, value.getClass().getName());
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "com.v.*");
+        deserializer = new ContentTypeDelegatingDeserializer();
+        deserializer.configure(config, false);
+
+        serializedHeaders = new RecordHeaders();
+        serialized = serializer.serialize(TOPIC, serializedHeaders, value);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return deserializer.deserialize(TOPIC, serializedHeaders, serialized);
+    }
+}
@@ -0,0 +1,44 @@
+package com.v.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.v.emailnotification.entity.ProcessEventEntity;
+import com.v.emailnotification.repository.ProcessEventRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+
+// ProcessEventRepository backed by a set of message ids, only the methods the handlers call are implemented
+final class InMemoryProcessEventRepository {
+
+    private final Set<String> messageIds = ConcurrentHashMap.newKeySet();
+
+    ProcessEventRepository repository() {
+        return (ProcessEventRepository) Proxy.newProxyInstance(
+                ProcessEventRepository.class.getClassLoader(),
+                new Class<?>[]{ProcessEventRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "existsByMessageId" -> messageIds.contains((String) args[0]);
+                    case "insertIfAbsent" -> messageIds.add((String) args[0]) ? 1 : 0;
+                    case "findRecentMessageIdsByPartition" -> List.copyOf(messageIds);
+                    case "save" -> save((ProcessEventEntity) args[0]);
+                    case "count" -> (long) messageIds.size();
+                    case "deleteAll" -> {
+                        messageIds.clear();
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryProcessEventRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private ProcessEventEntity save(ProcessEventEntity entity) {
+        if (!messageIds.add(entity.getMessageId())) {
+            throw new DataIntegrityViolationException("Duplicate message id " + entity.getMessageId());
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,145 @@
+package com.v.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.ProducerProfile;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+// Publishes the same bursty catalog load once per ProducerProfile against an embedded 3 broker cluster
+// (3 partitions, replication 3, min.insync.replicas 2, acks=all, idempotent - the production topic setup)
+// and prints throughput, send-to-ack latency percentiles and the batching the producer actually achieved.
+//
+//   java -cp benchmarks/target/benchmarks.jar com.v.benchmarks.ProducerProfileComparison [bursts] [burstSize] [pauseMs]
+//
+// Numbers from an embedded cluster are only good for comparing the profiles with each other, all brokers
+// share one JVM and one disk.
+public class ProducerProfileComparison {
+
+    private static final String TOPIC = "product-created-events-topic";
+    private static final List<String> TITLES = List.of(
+            "iPhone 11 128GB Black", "iPhone 13 256GB Midnight", "Samsung Galaxy S22 Ultra 512GB",
+            "Pixel 7 Pro 128GB Obsidian", "MacBook Air M2 13-inch 256GB", "Sony WH-1000XM5 Headphones");
+
+    public static void main(String[] args) throws Exception {
+        int bursts = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int burstSize = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long pauseMs = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        EmbeddedKafkaBroker cluster = new EmbeddedKafkaKraftBroker(3, 3, TOPIC)
+                .brokerProperty("min.insync.replicas", "2");
+        cluster.afterPropertiesSet();
+        try {
+            System.out.printf(Locale.ROOT, "%d bursts of %d records, %d ms apart%n%n", bursts, burstSize, pauseMs);
+            System.out.printf(Locale.ROOT, "%-10s %12s %9s %9s %9s %9s %9s %11s %12s%n", "profile", "records/s",
+                    "p50 ms", "p99 ms", "p99.9 ms", "max ms", "MB/s", "batch avg", "compression");
+            for (ProducerProfile profile : ProducerProfile.values()) {
+                // one throwaway round so every profile runs against warm brokers and a warm JIT
+                run(cluster.getBrokersAsString(), profile, 2, burstSize, pauseMs);
+                run(cluster.getBrokersAsString(), profile, bursts, burstSize, pauseMs).print();
+            }
+        } finally {
+            cluster.destroy();
+        }
+    }
+
+    private static Result run(String bootstrapServers, ProducerProfile profile, int bursts, int burstSize,
+                              long pauseMs) throws InterruptedException {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        profile.applyTo(config);
+
+        long[] latencies = new long[bursts * burstSize];
+        AtomicInteger acked = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        try (KafkaProducer<String, ProductCreatedEvent> producer = new KafkaProducer<>(config)) {
+            long start = System.nanoTime();
+            int index = 0;
+            for (int burst = 0; burst < bursts; burst++) {
+                for (int i = 0; i < burstSize; i++, index++) {
+                    int slot = index;
+                    long sentAt = System.nanoTime();
+                    producer.send(new ProducerRecord<>(TOPIC, UUID.randomUUID().toString(), event()),
+                            (metadata, exception) -> {
+                                latencies[slot] = System.nanoTime() - sentAt;
+                                (exception == null ? acked : failed).incrementAndGet();
+                            });
+                }
+                if (burst < bursts - 1) {
+                    TimeUnit.MILLISECONDS.sleep(pauseMs);
+                }
+            }
+            producer.flush();
+            long elapsed = System.nanoTime() - start;
+
+            return new Result(profile, latencies, acked.get(), failed.get(), elapsed,
+                    metric(producer.metrics(), "outgoing-byte-total"),
+                    metric(producer.metrics(), "batch-size-avg"),
+                    metric(producer.metrics(), "compression-rate-avg"));
+        }
+    }
+
+    private static ProductCreatedEvent event() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return ProductCreatedEvent.builder()
+                .productId(UUID.randomUUID().toString())
+                .title(TITLES.get(random.nextInt(TITLES.size())))
+                .price(BigDecimal.valueOf(random.nextLong(100, 200_000), 2))
+                .quantity(random.nextInt(1, 50))
+                .build();
+    }
+
+    private static double metric(Map<MetricName, ? extends Metric> metrics, String name) {
+        return metrics.entrySet().stream()
+                .filter(entry -> entry.getKey().name().equals(name)
+                        && entry.getKey().group().equals("producer-metrics"))
+                .mapToDouble(entry -> ((Number) entry.getValue().metricValue()).doubleValue())
+                .findFirst()
+                .orElse(Double.NaN);
+    }
+
+    private record Result(ProducerProfile profile, long[] latencies, int acked, int failed, long elapsedNanos,
+                          double outgoingBytes, double batchSizeAvg, double compressionRateAvg) {
+
+        void print() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf(Locale.ROOT, "%-10s %12.0f %9.2f %9.2f %9.2f %9.2f %9.2f %11.0f %12.2f%s%n",
+                    profile.name().toLowerCase(Locale.ROOT),
+                    acked / seconds,
+                    millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e6,
+                    outgoingBytes / seconds / (1024 * 1024),
+                    batchSizeAvg,
+                    compressionRateAvg,
+                    failed > 0 ? "  (" + failed + " failed)" : "");
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.v.benchmarks;
+
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.resilience.CircuitBreaker;
+import com.v.emailnotification.client.NotificationClient;
+import com.v.emailnotification.dedupe.ProcessedMessageCache;
+import com.v.emailnotification.dispatch.EmailDispatcher;
+import com.v.emailnotification.dispatch.EmailTemplates;
+import com.v.emailnotification.handler.ProductCreatedEventHandler;
+import com.v.emailnotification.repository.ProcessEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.web.client.RestTemplate;
+
+// ProductCreatedEventHandler.handle with an in-memory repository and a RestTemplate that answers 200 at once,
+// so only the handler's own work (dedupe check, entity, logging, circuit breaker bookkeeping) is measured.
+// Email dispatch is disabled, no SMTP server is involved.
+// New ids cost one insert-if-absent, the duplicate is answered by the recent ids.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductCreatedEventHandlerBenchmark {
+
+    private static final int PARTITION = 0;
+
+    private ProcessEventRepository repository;
+    private ProductCreatedEventHandler handler;
+    private ProductCreatedEvent event;
+    private String duplicateMessageId;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryProcessEventRepository().repository();
+        event = new ProductCreatedEvent(UUID.randomUUID().toString(), "iPhone 11 128GB Black",
+                new BigDecimal("600.99"), 3);
+        duplicateMessageId = UUID.randomUUID().toString();
+    }
+
+    // keep the id set and the dedupe filter from growing across iterations
+    @Setup(Level.Iteration)
+    public void resetRepository() {
+        repository.deleteAll();
+        ProcessedMessageCache processedMessageCache =
+                new ProcessedMessageCache(repository, new SimpleMeterRegistry(), 100_000, 0.01, 10_000, 100_000);
+        processedMessageCache.assign(List.of(PARTITION));
+        CircuitBreaker circuitBreaker = new CircuitBreaker("notification-service", 50, 20, 10,
+                Duration.ofSeconds(30), new SimpleMeterRegistry());
+        NotificationClient notificationClient = new NotificationClient(new StubRestTemplate(),
+                HttpClient.newHttpClient(), circuitBreaker, "http://localhost:8082/response/200");
+        EmailDispatcher emailDispatcher = new EmailDispatcher(new JavaMailSenderImpl(), new EmailTemplates(),
+                new SimpleMeterRegistry(), false, "catalog@localhost", List.of("catalog-watchers@localhost"), 500,
+                10_000);
+        handler = new ProductCreatedEventHandler(notificationClient, repository, processedMessageCache,
+                emailDispatcher);
+        handler.handle(event, duplicateMessageId, event.getProductId(), PARTITION);
+    }
+
+    @Benchmark
+    public void handleNewEvent() {
+        handler.handle(event, Long.toString(sequence++), event.getProductId(), PARTITION);
+    }
+
+    @Benchmark
+    public void handleDuplicateEvent() {
+        handler.handle(event, duplicateMessageId, event.getProductId(), PARTITION);
+    }
+
+    static final class StubRestTemplate extends RestTemplate {
+
+        private static final ResponseEntity<String> OK = ResponseEntity.ok("200");
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity,
+                                              Class<T> responseType, Object... uriVariables) {
+            return (ResponseEntity<T>) OK;
+        }
+    }
+}
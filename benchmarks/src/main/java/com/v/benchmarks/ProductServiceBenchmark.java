@@ -0,0 +1,97 @@
+package com.v.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.PublishMetrics;
+import com.v.productsmicroservice.dto.CreateProductRestModel;
+import com.v.productsmicroservice.service.ProductServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+// ProductServiceImpl.createProduct against a KafkaTemplate whose producer is a MockProducer: everything up to
+// and including serialization is real, the broker round trip is not.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    private AutoCompletingProducer producer;
+    private ProductServiceImpl productService;
+    private CreateProductRestModel product;
+
+    @Setup
+    public void setUp() {
+        producer = new AutoCompletingProducer();
+        ProducerFactory<String, ProductCreatedEvent> producerFactory = () -> producer;
+        KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        // outbox disabled and no idempotency keys, so the outbox writer and the idempotency cache are never touched
+        productService = new ProductServiceImpl(kafkaTemplate, null,
+                new PublishMetrics(new SimpleMeterRegistry(), 1000), null, 1000, 1000, false);
+
+        product = new CreateProductRestModel();
+        product.setTitle("iPhone 11 128GB Black");
+        product.setPrice(new BigDecimal("600.99"));
+        product.setQuantity(3);
+    }
+
+    @Benchmark
+    public String createProduct() {
+        producer.trimHistory();
+        return productService.createProduct(product);
+    }
+
+    @Benchmark
+    public String createProductAsync() {
+        producer.trimHistory();
+        CompletableFuture<String> productId = productService.createProductAsync(product);
+        return productId.join();
+    }
+
+    // KafkaTemplate closes the producer after every send, which would close a bare MockProducer for good
+    static final class AutoCompletingProducer extends MockProducer<String, ProductCreatedEvent> {
+
+        private int sends;
+
+        AutoCompletingProducer() {
+            super(true, new StringSerializer(), new JsonSerializer<>());
+        }
+
+        // MockProducer remembers every record it was sent, drop them regularly so the history does not skew
+        // the allocation numbers
+        void trimHistory() {
+            if ((++sends & 4095) == 0) {
+                clear();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(Duration timeout) {
+        }
+    }
+}
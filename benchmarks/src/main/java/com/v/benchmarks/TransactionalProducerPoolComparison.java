@@ -0,0 +1,161 @@
+package com.v.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.v.core.events.DepositRequestedEvent;
+import com.v.core.events.WithdrawalRequestedEvent;
+import com.v.core.kafka.PooledTransactionalProducerFactory;
+import com.v.core.kafka.ProducerProfile;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+// Runs transfer-shaped transactions (a WithdrawalRequestedEvent and a DepositRequestedEvent, then commit - what one
+// POST /transfers does) from concurrent callers against an embedded 3 broker cluster, once per producer pool size,
+// and prints transactions/s, transaction latency percentiles and how long callers waited for a producer.
+//
+//   java -cp benchmarks/target/benchmarks.jar com.v.benchmarks.TransactionalProducerPoolComparison \
+//       [callers] [transactionsPerCaller] [poolSizes, comma separated]
+//
+// Numbers from an embedded cluster are only good for comparing the pool sizes with each other, all brokers
+// share one JVM and one disk.
+public class TransactionalProducerPoolComparison {
+
+    private static final String WITHDRAW_TOPIC = "withdraw-money-topic";
+    private static final String DEPOSIT_TOPIC = "deposit-money-topic";
+
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int transactionsPerCaller = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int[] poolSizes = Arrays.stream((args.length > 2 ? args[2] : "1,2,4,8,16,32").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        EmbeddedKafkaBroker cluster = new EmbeddedKafkaKraftBroker(3, 3, WITHDRAW_TOPIC, DEPOSIT_TOPIC)
+                .brokerProperty("min.insync.replicas", "2");
+        cluster.afterPropertiesSet();
+        try {
+            System.out.printf(Locale.ROOT, "%d callers, %d transactions each%n%n", callers, transactionsPerCaller);
+            System.out.printf(Locale.ROOT, "%-6s %10s %9s %9s %9s %13s %13s%n", "pool", "tx/s", "p50 ms", "p99 ms",
+                    "max ms", "wait p50 ms", "wait p99 ms");
+            for (int poolSize : poolSizes) {
+                // one throwaway round so every pool size runs against warm brokers and a warm JIT
+                run(cluster.getBrokersAsString(), poolSize, callers, Math.max(1, transactionsPerCaller / 10));
+                run(cluster.getBrokersAsString(), poolSize, callers, transactionsPerCaller).print();
+            }
+        } finally {
+            cluster.destroy();
+        }
+    }
+
+    private static Result run(String bootstrapServers, int poolSize, int callers, int transactionsPerCaller)
+            throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        // a new prefix per run, so runs do not fence each other
+        config.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "pool-comparison-" + UUID.randomUUID() + "-");
+        ProducerProfile.LATENCY.applyTo(config);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PooledTransactionalProducerFactory<String, Object> producerFactory =
+                new PooledTransactionalProducerFactory<>(config, poolSize, Duration.ofSeconds(60), meterRegistry);
+        KafkaTemplate<String, Object> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            producerFactory.prewarm();
+            long[] latencies = new long[callers * transactionsPerCaller];
+            AtomicInteger failed = new AtomicInteger();
+            Future<?>[] futures = new Future<?>[callers];
+
+            long start = System.nanoTime();
+            for (int caller = 0; caller < callers; caller++) {
+                int offset = caller * transactionsPerCaller;
+                futures[caller] = executor.submit(() -> {
+                    for (int i = 0; i < transactionsPerCaller; i++) {
+                        long transactionStart = System.nanoTime();
+                        try {
+                            transfer(kafkaTemplate);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                        latencies[offset + i] = System.nanoTime() - transactionStart;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            return new Result(poolSize, latencies, failed.get(), elapsed,
+                    meterRegistry.get("kafka.producer.pool.wait").timer());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            producerFactory.destroy();
+        }
+    }
+
+    private static void transfer(KafkaTemplate<String, Object> kafkaTemplate) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String senderId = UUID.randomUUID().toString();
+        String recepientId = UUID.randomUUID().toString();
+        BigDecimal amount = BigDecimal.valueOf(random.nextLong(100, 100_000), 2);
+        kafkaTemplate.executeInTransaction(operations -> {
+            operations.send(WITHDRAW_TOPIC, new WithdrawalRequestedEvent(senderId, recepientId, amount));
+            operations.send(DEPOSIT_TOPIC, new DepositRequestedEvent(senderId, recepientId, amount));
+            return null;
+        });
+    }
+
+    private record Result(int poolSize, long[] latencies, int failed, long elapsedNanos, Timer poolWait) {
+
+        void print() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf(Locale.ROOT, "%-6d %10.0f %9.2f %9.2f %9.2f %13.2f %13.2f%s%n",
+                    poolSize,
+                    (sorted.length - failed) / seconds,
+                    millis(sorted, 0.50), millis(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6,
+                    waitMillis(0.5), waitMillis(0.99),
+                    failed > 0 ? "  (" + failed + " failed)" : "");
+        }
+
+        private double waitMillis(double percentile) {
+            for (ValueAtPercentile value : poolWait.takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    return value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+            return Double.NaN;
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
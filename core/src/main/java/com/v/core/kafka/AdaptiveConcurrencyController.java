@@ -0,0 +1,259 @@
+package com.v.core.kafka;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+// Scales the concurrency of every ConcurrentMessageListenerContainer in the registry between minConcurrency and the
+// partition count of its topics (capped at maxConcurrency), from what its consumer group is doing:
+//   lag    sum over the partitions of end offset - committed offset
+//   rate   committed offsets per second since the last check, so lag / rate is how long the backlog takes to drain
+//
+// Up when lag is above scaleUpLag and would take longer than targetDrain to drain at the current rate, straight to
+// the concurrency that drains it in targetDrain. Down by one consumer after idleChecks checks in a row with lag at or
+// below scaleDownLag. No change within cooldown of the previous one, and none for a paused container.
+//
+// A change restarts the container with the new concurrency, which rebalances its group.
+//
+// Meters, tagged listener (the container's listener id):
+//   kafka.listener.concurrency      gauge, consumers the container runs
+//   kafka.listener.lag              gauge, lag at the last check
+//   kafka.listener.rate             gauge, committed records per second at the last check
+//   kafka.listener.scaling          counter, tagged decision = up / down
+public class AdaptiveConcurrencyController implements SmartLifecycle {
+
+    public enum Decision { UP, DOWN, HOLD }
+
+    private static final Duration ADMIN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final Map<String, Object> adminConfig;
+    private final MeterRegistry meterRegistry;
+    private final Duration interval;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final Duration targetDrain;
+    private final int idleChecks;
+    private final Duration cooldown;
+
+    private final Meter.MeterProvider<Counter> scaling;
+    private final Map<String, ListenerState> listeners = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService scheduler;
+    private volatile Admin admin;
+
+    public AdaptiveConcurrencyController(KafkaListenerEndpointRegistry registry, Map<String, Object> adminConfig,
+                                         MeterRegistry meterRegistry, Duration interval, int minConcurrency,
+                                         int maxConcurrency, long scaleUpLag, long scaleDownLag, Duration targetDrain,
+                                         int idleChecks, Duration cooldown) {
+        this.registry = registry;
+        this.adminConfig = adminConfig;
+        this.meterRegistry = meterRegistry;
+        this.interval = interval;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.targetDrain = targetDrain;
+        this.idleChecks = Math.max(1, idleChecks);
+        this.cooldown = cooldown;
+        this.scaling = Counter.builder("kafka.listener.scaling")
+                .description("Concurrency changes made by the adaptive controller")
+                .withRegistry(meterRegistry);
+    }
+
+    // concurrency to run with for lag, rate (records per second) and current, see the class comment for the rules;
+    // idleChecksInRow includes this check
+    static int desiredConcurrency(int current, int limit, long lag, double rate, long scaleUpLag, long scaleDownLag,
+                                  Duration targetDrain, int idleChecksInRow, int idleChecks, int minConcurrency) {
+        if (lag > scaleUpLag && current < limit) {
+            double drainSeconds = rate > 0 ? lag / rate : Double.POSITIVE_INFINITY;
+            double targetSeconds = Math.max(1, targetDrain.toSeconds());
+            if (drainSeconds > targetSeconds) {
+                int needed = Double.isInfinite(drainSeconds)
+                        ? current + 1
+                        : (int) Math.ceil(current * drainSeconds / targetSeconds);
+                return Math.min(limit, Math.max(current + 1, needed));
+            }
+        }
+        if (lag <= scaleDownLag && idleChecksInRow >= idleChecks && current > minConcurrency) {
+            return current - 1;
+        }
+        return current;
+    }
+
+    void check() {
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            if (!isRunning()) {
+                return;
+            }
+            if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent && container.isRunning()) {
+                try {
+                    check(concurrent);
+                } catch (InterruptedException e) {
+                    // stopping
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    LOGGER.warn("Could not check the lag of listener {}: {}", container.getListenerId(),
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void check(ConcurrentMessageListenerContainer<?, ?> container) throws Exception {
+        String[] topics = container.getContainerProperties().getTopics();
+        String groupId = container.getGroupId();
+        if (topics == null || topics.length == 0 || groupId == null) {
+            return;
+        }
+        ListenerState state = listeners.computeIfAbsent(container.getListenerId(),
+                listenerId -> new ListenerState(listenerId, container));
+
+        Map<String, TopicDescription> descriptions = admin.describeTopics(List.of(topics)).allTopicNames()
+                .get(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        List<TopicPartition> partitions = descriptions.values().stream()
+                .flatMap(description -> description.partitions().stream()
+                        .map(info -> new TopicPartition(description.name(), info.partition())))
+                .toList();
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = admin
+                .listOffsets(partitions.stream().collect(Collectors.toMap(tp -> tp, tp -> OffsetSpec.latest())))
+                .all().get(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        // a partition without a committed offset starts from the end (auto.offset.reset=latest), it has no lag
+        long lag = 0;
+        long committedSum = 0;
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata offset = committed.get(partition);
+            if (offset != null) {
+                committedSum += offset.offset();
+                lag += Math.max(0, endOffsets.get(partition).offset() - offset.offset());
+            }
+        }
+
+        long now = System.nanoTime();
+        double rate = state.checkedAt == 0 ? 0
+                : Math.max(0, committedSum - state.committedSum) * 1e9 / (now - state.checkedAt);
+        state.checkedAt = now;
+        state.committedSum = committedSum;
+        state.lag.set(lag);
+        state.rate = rate;
+        state.idleChecksInRow = lag <= scaleDownLag ? state.idleChecksInRow + 1 : 0;
+
+        int current = container.getConcurrency();
+        int limit = Math.min(maxConcurrency, partitions.size());
+        int desired = desiredConcurrency(current, limit, lag, rate, scaleUpLag, scaleDownLag, targetDrain,
+                state.idleChecksInRow, idleChecks, minConcurrency);
+        if (desired == current || container.isPauseRequested()
+                || (state.changedAt != 0 && now - state.changedAt < cooldown.toNanos())) {
+            return;
+        }
+
+        Decision decision = desired > current ? Decision.UP : Decision.DOWN;
+        LOGGER.info("Scaling listener {} {} from {} to {} consumers, lag {}, {} records/s", container.getListenerId(),
+                decision.name().toLowerCase(), current, desired, lag, String.format("%.1f", rate));
+        scaling.withTags("listener", state.listenerId, "decision", decision.name().toLowerCase()).increment();
+        state.changedAt = now;
+        state.idleChecksInRow = 0;
+        // the callback runs on a consumer thread of the stopping container, restart it from ours
+        ScheduledExecutorService restarter = scheduler;
+        container.stop(() -> restarter.execute(() -> {
+            container.setConcurrency(desired);
+            container.start();
+        }));
+    }
+
+    @Override
+    public void start() {
+        admin = Admin.create(adminConfig);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-concurrency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService running = scheduler;
+        scheduler = null;
+        if (running != null) {
+            running.shutdownNow();
+            try {
+                running.awaitTermination(ADMIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            admin.close(ADMIN_TIMEOUT);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    // after the listener containers, so they are running before the first check and stop after it
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    private final class ListenerState {
+
+        private final String listenerId;
+        private final AtomicLong lag = new AtomicLong();
+        private volatile double rate;
+        private long committedSum;
+        private long checkedAt;
+        private long changedAt;
+        private int idleChecksInRow;
+
+        private ListenerState(String listenerId, ConcurrentMessageListenerContainer<?, ?> container) {
+            this.listenerId = listenerId;
+            Gauge.builder("kafka.listener.concurrency", container, ConcurrentMessageListenerContainer::getConcurrency)
+                    .description("Consumers the listener container runs")
+                    .tag("listener", listenerId)
+                    .register(meterRegistry);
+            Gauge.builder("kafka.listener.lag", lag, AtomicLong::get)
+                    .description("Consumer group lag over the listener's partitions at the last check")
+                    .tag("listener", listenerId)
+                    .register(meterRegistry);
+            Gauge.builder("kafka.listener.rate", this, listener -> listener.rate)
+                    .description("Committed records per second at the last check")
+                    .tag("listener", listenerId)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.v.core.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+// Places keyed records on a hash ring with virtual-nodes points per partition. The same key always lands on the same
+// partition for a given partition count, and when partitions are added only the keys that fall on the new
+// partitions' points move (about 1/n of them), where murmur2 % n of the default partitioner moves most keys. Records
+// without a key are spread round robin.
+//
+// Every producer of a topic has to use this partitioner, a key sent with the default one ends up elsewhere.
+//
+//   ProducerConfig.PARTITIONER_CLASS_CONFIG = ConsistentHashPartitioner.class
+//   consistent-hash.virtual-nodes = 128 (default)
+public class ConsistentHashPartitioner implements Partitioner {
+
+    public static final String VIRTUAL_NODES_CONFIG = "consistent-hash.virtual-nodes";
+
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private int virtualNodes = DEFAULT_VIRTUAL_NODES;
+
+    // rings by partition count, topics with the same count share one
+    private final ConcurrentMap<Integer, Ring> rings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> unkeyed = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(VIRTUAL_NODES_CONFIG);
+        if (value != null) {
+            virtualNodes = Integer.parseInt(value.toString());
+            if (virtualNodes < 1) {
+                throw new IllegalArgumentException(VIRTUAL_NODES_CONFIG + " must be at least 1");
+            }
+        }
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        int numPartitions = cluster.partitionsForTopic(topic).size();
+        if (keyBytes == null) {
+            int next = unkeyed.computeIfAbsent(topic, t -> new AtomicInteger()).getAndIncrement();
+            return Utils.toPositive(next) % numPartitions;
+        }
+        return partition(keyBytes, numPartitions);
+    }
+
+    public int partition(byte[] keyBytes, int numPartitions) {
+        return rings.computeIfAbsent(numPartitions, n -> new Ring(n, virtualNodes)).partition(Utils.murmur2(keyBytes));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static final class Ring {
+
+        private final int[] points;
+        private final int[] partitions;
+
+        Ring(int numPartitions, int virtualNodes) {
+            long[] entries = new long[numPartitions * virtualNodes];
+            int i = 0;
+            for (int partition = 0; partition < numPartitions; partition++) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    int point = Utils.murmur2((partition + "-" + node).getBytes(StandardCharsets.UTF_8));
+                    // sorts by point, the partition rides along in the low bits
+                    entries[i++] = ((long) point << 32) | partition;
+                }
+            }
+            Arrays.sort(entries);
+            points = new int[entries.length];
+            partitions = new int[entries.length];
+            for (i = 0; i < entries.length; i++) {
+                points[i] = (int) (entries[i] >> 32);
+                partitions[i] = (int) entries[i];
+            }
+        }
+
+        // the first point at or after the hash, wrapping around to the first one
+        int partition(int hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return partitions[index == points.length ? 0 : index];
+        }
+    }
+}
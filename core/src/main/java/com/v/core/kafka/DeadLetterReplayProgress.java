@@ -0,0 +1,10 @@
+package com.v.core.kafka;
+
+import java.time.Instant;
+
+// Snapshot of a replay. total is the number of records between the start offsets and the end offsets the replay
+// stops at, scanned = replayed + filtered once it completes.
+public record DeadLetterReplayProgress(String id, String topic, DeadLetterReplayer.State state, long total,
+                                       long scanned, long replayed, long filtered, Instant startedAt,
+                                       Instant finishedAt, String error) {
+}
@@ -0,0 +1,13 @@
+package com.v.core.kafka;
+
+import java.time.Instant;
+
+// What DeadLetterReplayer should republish from a dead letter topic.
+//   topic           the dead letter topic, e.g. product-created-events-topic.DLT
+//   exceptionClass  only records that failed with this exception (class name, simple or fully qualified, matched
+//                   against the exception and its cause), null for all
+//   from, to        only records with a timestamp in [from, to), either may be null
+//   ratePerSecond   records republished per second, null or 0 for the replayer's default
+public record DeadLetterReplayRequest(String topic, String exceptionClass, Instant from, Instant to,
+                                      Double ratePerSecond) {
+}
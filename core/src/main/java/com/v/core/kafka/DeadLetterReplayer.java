@@ -0,0 +1,309 @@
+package com.v.core.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.v.core.resilience.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Sends records from a dead letter topic back to the topic they failed on, each replay on its own thread.
+//
+// A replay reads the DLT with its own consumer (no group, nothing is committed) from the beginning, or from the first
+// offset at or after request.from, up to the end offsets it saw when it started, so records that fail again and land
+// on the DLT are not picked up twice. Keys, values and headers go out as the bytes they are, without the kafka_dlt-*
+// and retry_topic-* headers, so a record that fails again gets fresh ones. The destination is the
+// kafka_dlt-original-topic header, or the DLT name without its .DLT / -dlt suffix.
+//
+// The rate is held by a token bucket, a batch is one poll (max.poll.records = batchSize) and is flushed before the
+// next one. Consumers dedupe on messageId, so running a replay twice is safe.
+//
+// Counter kafka.dlt.replay.records, tagged topic (the DLT) and outcome = replayed / filtered.
+public class DeadLetterReplayer implements AutoCloseable {
+
+    public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    // header names written by spring-kafka's DeadLetterPublishingRecoverer and retry topics
+    static final String ORIGINAL_TOPIC_HEADER = "kafka_dlt-original-topic";
+    static final String EXCEPTION_HEADER = "kafka_dlt-exception-fqcn";
+    static final String EXCEPTION_CAUSE_HEADER = "kafka_dlt-exception-cause-fqcn";
+    private static final String DLT_HEADER_PREFIX = "kafka_dlt-";
+    private static final String RETRY_TOPIC_HEADER_PREFIX = "retry_topic-";
+    // ours, and spring-kafka's default for a DeadLetterPublishingRecoverer without a destination resolver
+    private static final List<String> DLT_SUFFIXES = List.of(".DLT", "-dlt");
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<String, Object> clientConfig;
+    private final double defaultRatePerSecond;
+    private final int batchSize;
+    private final Meter.MeterProvider<Counter> records;
+    private final Map<String, Replay> replays = new ConcurrentHashMap<>();
+
+    // clientConfig: bootstrap servers and anything else both the consumer and the producer need (security)
+    public DeadLetterReplayer(Map<String, Object> clientConfig, double defaultRatePerSecond, int batchSize,
+                              MeterRegistry meterRegistry) {
+        this.clientConfig = Map.copyOf(clientConfig);
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.batchSize = batchSize;
+        this.records = Counter.builder("kafka.dlt.replay.records")
+                .description("Dead letters replayed to their original topic or skipped by the replay filter")
+                .withRegistry(meterRegistry);
+    }
+
+    public DeadLetterReplayProgress start(DeadLetterReplayRequest request) {
+        if (request.topic() == null || DLT_SUFFIXES.stream().noneMatch(request.topic()::endsWith)) {
+            throw new IllegalArgumentException("Not a dead letter topic: " + request.topic());
+        }
+        double rate = request.ratePerSecond() == null || request.ratePerSecond() <= 0
+                ? defaultRatePerSecond : request.ratePerSecond();
+        Replay replay = new Replay(UUID.randomUUID().toString(), request, new TokenBucket(rate, rate));
+        replays.put(replay.id, replay);
+        Thread thread = new Thread(replay::run, "dlt-replay-" + replay.id);
+        thread.setDaemon(true);
+        replay.thread = thread;
+        thread.start();
+        return replay.progress();
+    }
+
+    public Optional<DeadLetterReplayProgress> progress(String id) {
+        return Optional.ofNullable(replays.get(id)).map(Replay::progress);
+    }
+
+    public List<DeadLetterReplayProgress> progress() {
+        return replays.values().stream().map(Replay::progress).toList();
+    }
+
+    // the replay stops after the batch it is in, what was sent stays sent
+    public Optional<DeadLetterReplayProgress> cancel(String id) {
+        Replay replay = replays.get(id);
+        if (replay == null) {
+            return Optional.empty();
+        }
+        replay.cancelled = true;
+        return Optional.of(replay.progress());
+    }
+
+    @Override
+    public void close() {
+        replays.values().forEach(replay -> replay.cancelled = true);
+        for (Replay replay : replays.values()) {
+            try {
+                replay.thread.join(POLL_TIMEOUT.toMillis() * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    static boolean matches(ConsumerRecord<byte[], byte[]> record, DeadLetterReplayRequest request) {
+        if (request.from() != null && record.timestamp() < request.from().toEpochMilli()) {
+            return false;
+        }
+        if (request.to() != null && record.timestamp() >= request.to().toEpochMilli()) {
+            return false;
+        }
+        if (request.exceptionClass() == null || request.exceptionClass().isBlank()) {
+            return true;
+        }
+        return exceptionMatches(header(record, EXCEPTION_HEADER), request.exceptionClass())
+                || exceptionMatches(header(record, EXCEPTION_CAUSE_HEADER), request.exceptionClass());
+    }
+
+    private static boolean exceptionMatches(String className, String wanted) {
+        return className != null && (className.equals(wanted) || className.endsWith("." + wanted));
+    }
+
+    static ProducerRecord<byte[], byte[]> toOriginalTopic(ConsumerRecord<byte[], byte[]> record) {
+        String topic = header(record, ORIGINAL_TOPIC_HEADER);
+        if (topic == null) {
+            String dlt = record.topic();
+            topic = DLT_SUFFIXES.stream().filter(dlt::endsWith).findFirst()
+                    .map(suffix -> dlt.substring(0, dlt.length() - suffix.length()))
+                    .orElse(dlt);
+        }
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith(DLT_HEADER_PREFIX) && !header.key().startsWith(RETRY_TOPIC_HEADER_PREFIX)) {
+                headers.add(header);
+            }
+        }
+        // partitioned by key again, the original partition count may have changed since
+        return new ProducerRecord<>(topic, null, record.key(), record.value(), headers);
+    }
+
+    private static String header(ConsumerRecord<byte[], byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private final class Replay {
+
+        private final String id;
+        private final DeadLetterReplayRequest request;
+        private final TokenBucket tokenBucket;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong filtered = new AtomicLong();
+        private final AtomicReference<Exception> sendFailure = new AtomicReference<>();
+        private volatile long total;
+        private volatile State state = State.RUNNING;
+        private volatile Instant finishedAt;
+        private volatile String error;
+        private volatile boolean cancelled;
+        private Thread thread;
+
+        private Replay(String id, DeadLetterReplayRequest request, TokenBucket tokenBucket) {
+            this.id = id;
+            this.request = request;
+            this.tokenBucket = tokenBucket;
+        }
+
+        private DeadLetterReplayProgress progress() {
+            return new DeadLetterReplayProgress(id, request.topic(), state, total, scanned.get(), replayed.get(),
+                    filtered.get(), startedAt, finishedAt, error);
+        }
+
+        private void run() {
+            Map<String, Object> consumerConfig = new HashMap<>(clientConfig);
+            consumerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            consumerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            consumerConfig.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+            consumerConfig.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+            Map<String, Object> producerConfig = ProducerProfile.THROUGHPUT.applyTo(new HashMap<>(clientConfig));
+            producerConfig.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+            producerConfig.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+            producerConfig.put(ProducerConfig.ACKS_CONFIG, "all");
+            producerConfig.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+
+            LOGGER.info("Replay {} of {} started: {}", id, request.topic(), request);
+            try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig);
+                 KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(producerConfig)) {
+                replay(consumer, producer);
+                state = cancelled ? State.CANCELLED : State.COMPLETED;
+            } catch (Exception e) {
+                LOGGER.error("Replay {} of {} failed", id, request.topic(), e);
+                error = e.getMessage();
+                state = State.FAILED;
+            }
+            finishedAt = Instant.now();
+            LOGGER.info("Replay {} of {} {}: {} replayed, {} filtered", id, request.topic(),
+                    state.name().toLowerCase(), replayed.get(), filtered.get());
+        }
+
+        private void replay(KafkaConsumer<byte[], byte[]> consumer, KafkaProducer<byte[], byte[]> producer)
+                throws Exception {
+            List<TopicPartition> partitions = consumer.partitionsFor(request.topic()).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            Map<TopicPartition, Long> startOffsets = startOffsets(consumer, partitions, endOffsets);
+            startOffsets.forEach(consumer::seek);
+            total = partitions.stream().mapToLong(tp -> endOffsets.get(tp) - startOffsets.get(tp)).sum();
+
+            Set<TopicPartition> remaining = new HashSet<>();
+            for (TopicPartition partition : partitions) {
+                if (startOffsets.get(partition) < endOffsets.get(partition)) {
+                    remaining.add(partition);
+                } else {
+                    consumer.pause(List.of(partition));
+                }
+            }
+
+            Counter replayedCounter = records.withTags("topic", request.topic(), "outcome", "replayed");
+            Counter filteredCounter = records.withTags("topic", request.topic(), "outcome", "filtered");
+            while (!remaining.isEmpty() && !cancelled) {
+                ConsumerRecords<byte[], byte[]> batch = consumer.poll(POLL_TIMEOUT);
+                for (TopicPartition partition : batch.partitions()) {
+                    long end = endOffsets.get(partition);
+                    for (ConsumerRecord<byte[], byte[]> record : batch.records(partition)) {
+                        if (record.offset() >= end) {
+                            break;
+                        }
+                        scanned.incrementAndGet();
+                        if (!matches(record, request)) {
+                            filtered.incrementAndGet();
+                            filteredCounter.increment();
+                            continue;
+                        }
+                        tokenBucket.acquire(1);
+                        producer.send(toOriginalTopic(record), (metadata, exception) -> {
+                            if (exception != null) {
+                                sendFailure.compareAndSet(null, exception);
+                            }
+                        });
+                        replayed.incrementAndGet();
+                        replayedCounter.increment();
+                    }
+                }
+                producer.flush();
+                if (sendFailure.get() != null) {
+                    throw sendFailure.get();
+                }
+
+                List<TopicPartition> done = new ArrayList<>();
+                for (TopicPartition partition : remaining) {
+                    if (consumer.position(partition) >= endOffsets.get(partition)) {
+                        done.add(partition);
+                    }
+                }
+                consumer.pause(done);
+                done.forEach(remaining::remove);
+            }
+        }
+
+        // beginning, or the first offset with a timestamp at or after request.from
+        private Map<TopicPartition, Long> startOffsets(KafkaConsumer<byte[], byte[]> consumer,
+                                                       Collection<TopicPartition> partitions,
+                                                       Map<TopicPartition, Long> endOffsets) {
+            if (request.from() == null) {
+                return consumer.beginningOffsets(partitions);
+            }
+            Map<TopicPartition, Long> timestamps = new HashMap<>();
+            partitions.forEach(partition -> timestamps.put(partition, request.from().toEpochMilli()));
+            Map<TopicPartition, OffsetAndTimestamp> found = consumer.offsetsForTimes(timestamps);
+            Map<TopicPartition, Long> startOffsets = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                OffsetAndTimestamp offset = found.get(partition);
+                startOffsets.put(partition, offset == null ? endOffsets.get(partition) : offset.offset());
+            }
+            return startOffsets;
+        }
+    }
+}
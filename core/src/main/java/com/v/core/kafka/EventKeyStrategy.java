@@ -0,0 +1,38 @@
+package com.v.core.kafka;
+
+import com.v.core.events.DepositRequestedEvent;
+import com.v.core.events.WithdrawalRequestedEvent;
+
+// Picks the record key an event is published with. The key decides the partition, so every event with the same key
+// reaches the same consumer thread in publish order. A null key leaves the placement to the partitioner.
+@FunctionalInterface
+public interface EventKeyStrategy {
+
+    String keyFor(Object event);
+
+    // keys by the account whose balance the event changes: a withdrawal by its sender, a deposit by its recipient
+    static EventKeyStrategy account() {
+        return event -> {
+            if (event instanceof WithdrawalRequestedEvent withdrawal) {
+                return withdrawal.getSenderId();
+            }
+            if (event instanceof DepositRequestedEvent deposit) {
+                return deposit.getRecepientId();
+            }
+            return null;
+        };
+    }
+
+    static EventKeyStrategy none() {
+        return event -> null;
+    }
+
+    static EventKeyStrategy from(String name) {
+        return switch (name.toLowerCase()) {
+            case "account" -> account();
+            case "none" -> none();
+            default -> throw new IllegalArgumentException("Unknown event key strategy " + name
+                    + ", expected account or none");
+        };
+    }
+}
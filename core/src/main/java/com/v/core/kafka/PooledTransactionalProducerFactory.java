@@ -0,0 +1,231 @@
+package com.v.core.kafka;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.errors.InvalidProducerEpochException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.DefaultTransactionIdSuffixStrategy;
+import org.springframework.kafka.core.NoProducerAvailableException;
+import org.springframework.kafka.core.ProducerFactory;
+
+// A transactional producer factory with a fixed number of producers. Transactional ids are <prefix><0..poolSize-1>,
+// so with a prefix that is stable per instance a restart reuses the same ids and fences the producers of the
+// previous run. Producers are cached and reused as usual; when all of them are in use, a caller waits up to maxWait
+// for one to come back instead of a new producer being opened, then gets NoProducerAvailableException.
+//
+// prewarm() opens the whole pool up front, so the first transactions do not pay for initTransactions.
+//
+//   kafka.producer.pool.wait         timer, time to get a producer (0 when one is idle)
+//   kafka.producer.pool.timeouts     counter, callers that gave up after maxWait
+//   kafka.producer.pool.size         gauge, configured pool size
+//   kafka.producer.pool.in-use       gauge, producers handed out right now
+//   kafka.producer.created / closed  counters, producers opened and physically closed
+//   kafka.producer.fenced            counter, calls that failed because another producer took over the id
+//   kafka.producer.transaction       timer per phase: init, begin, send (the send() call), commit, abort
+public class PooledTransactionalProducerFactory<K, V> extends DefaultKafkaProducerFactory<K, V> {
+
+    private static final Map<String, String> PHASES = Map.of(
+            "initTransactions", "init",
+            "beginTransaction", "begin",
+            "send", "send",
+            "commitTransaction", "commit",
+            "abortTransaction", "abort");
+
+    private final int poolSize;
+    private final long maxWaitNanos;
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    // guarded by lock, lets a caller tell whether a producer came back since its last attempt
+    private long returns;
+
+    private final Timer waitTimer;
+    private final Counter timeouts;
+    private final Counter created;
+    private final Counter closed;
+    private final Counter fenced;
+    private final Meter.MeterProvider<Timer> phases;
+
+    // configs must carry ProducerConfig.TRANSACTIONAL_ID_CONFIG, it is the prefix of the ids
+    public PooledTransactionalProducerFactory(Map<String, Object> configs, int poolSize, Duration maxWait,
+                                              MeterRegistry meterRegistry) {
+        super(configs);
+        if (getTransactionIdPrefix() == null) {
+            throw new IllegalArgumentException("A transactional.id prefix is required");
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least 1");
+        }
+        this.poolSize = poolSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        setTransactionIdSuffixStrategy(new DefaultTransactionIdSuffixStrategy(poolSize));
+
+        this.waitTimer = Timer.builder("kafka.producer.pool.wait")
+                .description("Time to get a transactional producer from the pool")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.timeouts = meterRegistry.counter("kafka.producer.pool.timeouts");
+        this.created = meterRegistry.counter("kafka.producer.created");
+        this.closed = meterRegistry.counter("kafka.producer.closed");
+        this.fenced = meterRegistry.counter("kafka.producer.fenced");
+        this.phases = Timer.builder("kafka.producer.transaction")
+                .description("Time spent in each transaction phase")
+                .publishPercentiles(0.5, 0.99)
+                .withRegistry(meterRegistry);
+        Gauge.builder("kafka.producer.pool.size", () -> this.poolSize).register(meterRegistry);
+        Gauge.builder("kafka.producer.pool.in-use", inUse, AtomicInteger::get).register(meterRegistry);
+
+        addListener(new ProducerFactory.Listener<>() {
+            @Override
+            public void producerAdded(String id, Producer<K, V> producer) {
+                created.increment();
+            }
+
+            @Override
+            public void producerRemoved(String id, Producer<K, V> producer) {
+                closed.increment();
+            }
+        });
+        addPostProcessor(this::timed);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    // opens every producer of the pool and puts it back in the cache, returns how many were opened
+    public int prewarm() {
+        List<Producer<K, V>> producers = new ArrayList<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                producers.add(createProducer());
+            }
+        } finally {
+            producers.forEach(Producer::close);
+        }
+        return producers.size();
+    }
+
+    @Override
+    protected Producer<K, V> createTransactionalProducer(String txIdPrefix) {
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        while (true) {
+            long seen = returns();
+            try {
+                Producer<K, V> producer = super.createTransactionalProducer(txIdPrefix);
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                inUse.incrementAndGet();
+                return borrowed(producer);
+            } catch (NoProducerAvailableException e) {
+                if (!awaitReturn(seen, deadline)) {
+                    waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    timeouts.increment();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long returns() {
+        lock.lock();
+        try {
+            return returns;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // false once the deadline passed without a producer coming back
+    private boolean awaitReturn(long seen, long deadline) {
+        lock.lock();
+        try {
+            while (returns == seen) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                returned.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void producerReturned() {
+        inUse.decrementAndGet();
+        lock.lock();
+        try {
+            returns++;
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // wraps the cached producer handed to the caller, closing it puts it back and wakes up waiting callers
+    @SuppressWarnings("unchecked")
+    private Producer<K, V> borrowed(Producer<K, V> producer) {
+        AtomicBoolean returnedOnce = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return method.invoke(producer, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if ("close".equals(method.getName()) && returnedOnce.compareAndSet(false, true)) {
+                    producerReturned();
+                }
+            }
+        };
+        return (Producer<K, V>) Proxy.newProxyInstance(Producer.class.getClassLoader(),
+                new Class<?>[] {Producer.class}, handler);
+    }
+
+    // wraps the raw KafkaProducer: times the transaction phases and counts fencing
+    @SuppressWarnings("unchecked")
+    private Producer<K, V> timed(Producer<K, V> producer) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            String phase = PHASES.get(method.getName());
+            long start = phase != null ? System.nanoTime() : 0;
+            try {
+                return method.invoke(producer, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof ProducerFencedException || cause instanceof InvalidProducerEpochException) {
+                    fenced.increment();
+                }
+                throw cause;
+            } finally {
+                if (phase != null) {
+                    phases.withTags("phase", phase).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+        return (Producer<K, V>) Proxy.newProxyInstance(Producer.class.getClassLoader(),
+                new Class<?>[] {Producer.class}, handler);
+    }
+}
@@ -0,0 +1,66 @@
+package com.v.core.kafka;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+// Named producer tuning presets. Batching, compression, buffer memory and in-flight requests only make sense
+// as a group (a big batch.size without linger never fills, compression pays off on full batches only), so a
+// service picks a profile with kafka.producer.profile instead of setting them one by one.
+//
+// In-flight stays at 5 everywhere: it is the highest value the idempotent and transactional producers accept
+// and ordering per partition is kept by the idempotent sequence numbers, not by sending one request at a time.
+public enum ProducerProfile {
+
+    // every record goes out as soon as send() is called, what the services did before the profiles existed
+    LATENCY(0, 16 * 1024, "none", 32 * 1024 * 1024L, 5),
+
+    // a few ms of linger turns request bursts into real batches, lz4 is cheap enough to always be on
+    BALANCED(5, 64 * 1024, "lz4", 64 * 1024 * 1024L, 5),
+
+    // bulk loads and relays nobody waits on per record, big batches compress best with zstd
+    THROUGHPUT(20, 256 * 1024, "zstd", 128 * 1024 * 1024L, 5);
+
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+    private final long bufferMemory;
+    private final int maxInFlightRequestsPerConnection;
+
+    ProducerProfile(int lingerMs, int batchSize, String compressionType, long bufferMemory,
+                    int maxInFlightRequestsPerConnection) {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+        this.bufferMemory = bufferMemory;
+        this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+    }
+
+    public Map<String, Object> settings() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        settings.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        settings.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        settings.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        settings.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequestsPerConnection);
+        return settings;
+    }
+
+    // overwrites the tuning keys of an existing producer config, everything else is left alone
+    public Map<String, Object> applyTo(Map<String, Object> config) {
+        config.putAll(settings());
+        return config;
+    }
+
+    public static ProducerProfile from(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown producer profile '" + name + "', expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.v.core.kafka;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+// Micrometer meters for producer sends, recorded from the send callback:
+//   kafka.publish.latency      timer, send() to broker ack, tagged topic / partition / outcome
+//   kafka.publish.records      counter, tagged topic / outcome
+//   kafka.publish.record.size  summary of serialized key + value bytes, tagged topic
+//
+// Also decides which publishes get a debug log line, so per-request logging can stay on at high rates.
+public class PublishMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    private static final String UNKNOWN_PARTITION = "unknown";
+
+    private final Meter.MeterProvider<Timer> latency;
+    private final Meter.MeterProvider<Counter> records;
+    private final Meter.MeterProvider<DistributionSummary> recordSize;
+    private final long logSampleRate;
+    private final AtomicLong publishes = new AtomicLong();
+
+    public PublishMetrics(MeterRegistry meterRegistry, long logSampleRate) {
+        this.latency = Timer.builder("kafka.publish.latency")
+                .description("Time from send() until the broker acknowledged or rejected the record")
+                .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .withRegistry(meterRegistry);
+        this.records = Counter.builder("kafka.publish.records")
+                .description("Records handed to the producer, by outcome")
+                .withRegistry(meterRegistry);
+        this.recordSize = DistributionSummary.builder("kafka.publish.record.size")
+                .description("Serialized key and value size of acknowledged records")
+                .baseUnit("bytes")
+                .withRegistry(meterRegistry);
+        this.logSampleRate = Math.max(1, logSampleRate);
+    }
+
+    // pass the result to record(...) from the send callback
+    public long start() {
+        return System.nanoTime();
+    }
+
+    // metadata is null when the send failed before the broker assigned a partition
+    public void record(String topic, long startNanos, RecordMetadata metadata, Throwable exception) {
+        long elapsed = System.nanoTime() - startNanos;
+        String outcome = exception == null ? SUCCESS : FAILURE;
+        String partition = metadata != null && metadata.partition() >= 0
+                ? Integer.toString(metadata.partition()) : UNKNOWN_PARTITION;
+
+        latency.withTags("topic", topic, "partition", partition, "outcome", outcome)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        records.withTags("topic", topic, "outcome", outcome).increment();
+
+        if (exception == null && metadata != null) {
+            int size = Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize());
+            recordSize.withTags("topic", topic).record(size);
+        }
+    }
+
+    // true for one publish out of logSampleRate, check the logger level first so nothing is counted when debug is off
+    public boolean sampled() {
+        return publishes.getAndIncrement() % logSampleRate == 0;
+    }
+}
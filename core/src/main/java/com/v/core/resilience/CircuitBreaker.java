@@ -0,0 +1,246 @@
+package com.v.core.resilience;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Circuit breaker for the calls to one remote service.
+//
+// CLOSED     calls go through, the outcomes of the last slidingWindowSize calls are kept. Once minimumCalls are in
+//            the window and failureRateThreshold percent of them failed, it opens.
+// OPEN       calls are rejected with CircuitBreakerOpenException. After openDuration a timer moves it to half open,
+//            so a consumer that paused on OPEN gets its state listener call to resume without waiting for a call.
+// HALF_OPEN  one probe call at a time goes through, the others are rejected. Success closes it, failure opens it again.
+//
+// State listeners run on the thread that caused the transition, after the breaker's own lock is released.
+//
+// Meters, tagged name:
+//   circuit.breaker.state  gauge per state tag, 1 for the current state
+//   circuit.breaker.calls  counter, tagged outcome = success / failure / rejected
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+
+    // ring of the last outcomes, true = failure
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCalls;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter rejections;
+
+    public CircuitBreaker(String name, int failureRateThreshold, int slidingWindowSize, int minimumCalls,
+                          Duration openDuration, MeterRegistry meterRegistry) {
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("failureRateThreshold must be 1..100, was " + failureRateThreshold);
+        }
+        if (minimumCalls < 1 || minimumCalls > slidingWindowSize) {
+            throw new IllegalArgumentException("minimumCalls must be 1.." + slidingWindowSize + ", was " + minimumCalls);
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openDuration.toNanos();
+        this.window = new boolean[slidingWindowSize];
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "circuit-breaker-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (State gaugeState : State.values()) {
+            Gauge.builder("circuit.breaker.state", this, breaker -> breaker.state() == gaugeState ? 1 : 0)
+                    .description("1 for the state the circuit breaker is in")
+                    .tags("name", name, "state", gaugeState.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        this.successes = calls(meterRegistry, name, "success");
+        this.failures = calls(meterRegistry, name, "failure");
+        this.rejections = calls(meterRegistry, name, "rejected");
+    }
+
+    private static Counter calls(MeterRegistry meterRegistry, String name, String outcome) {
+        return Counter.builder("circuit.breaker.calls")
+                .description("Calls through the circuit breaker, by outcome")
+                .tags("name", name, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    // called with the new state on every transition
+    public void addStateListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public <T> T execute(Supplier<T> call) {
+        if (!tryAcquirePermission()) {
+            throw new CircuitBreakerOpenException(name);
+        }
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    // the returned future completes after the outcome has been recorded
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new CircuitBreakerOpenException(name));
+        }
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            onFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, ex) -> {
+            if (ex == null) {
+                onSuccess();
+            } else {
+                onFailure();
+            }
+        });
+    }
+
+    public boolean tryAcquirePermission() {
+        State changedTo = null;
+        boolean permitted;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                changedTo = transition(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                permitted = true;
+            } else if (state == State.HALF_OPEN && !probeInFlight) {
+                probeInFlight = true;
+                permitted = true;
+            } else {
+                permitted = false;
+            }
+        }
+        if (!permitted) {
+            rejections.increment();
+        }
+        notifyListeners(changedTo);
+        return permitted;
+    }
+
+    public void onSuccess() {
+        successes.increment();
+        State changedTo = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                changedTo = transition(State.CLOSED);
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+            // OPEN: a call started before the breaker opened, its outcome no longer matters
+        }
+        notifyListeners(changedTo);
+    }
+
+    public void onFailure() {
+        failures.increment();
+        State changedTo = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                changedTo = transition(State.OPEN);
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+                    changedTo = transition(State.OPEN);
+                }
+            }
+        }
+        notifyListeners(changedTo);
+    }
+
+    private void halfOpenAfterTimeout() {
+        State changedTo = null;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                changedTo = transition(State.HALF_OPEN);
+            }
+        }
+        notifyListeners(changedTo);
+    }
+
+    // callers hold the lock
+    private State transition(State to) {
+        state = to;
+        probeInFlight = false;
+        switch (to) {
+            case OPEN -> {
+                openedAt = System.nanoTime();
+                timer.schedule(this::halfOpenAfterTimeout, openNanos, TimeUnit.NANOSECONDS);
+            }
+            case CLOSED -> {
+                windowNext = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+            }
+            case HALF_OPEN -> {
+            }
+        }
+        return to;
+    }
+
+    // callers hold the lock
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    private void notifyListeners(State changedTo) {
+        if (changedTo != null) {
+            listeners.forEach(listener -> listener.accept(changedTo));
+        }
+    }
+}
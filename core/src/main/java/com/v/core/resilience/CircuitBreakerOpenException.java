@@ -0,0 +1,19 @@
+package com.v.core.resilience;
+
+// thrown instead of calling the remote service while its circuit breaker is open
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    public CircuitBreakerOpenException(String name) {
+        super("Circuit breaker " + name + " is open, call not permitted");
+    }
+
+    // listener containers wrap what the listener threw, look through the causes
+    public static boolean isCause(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitBreakerOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
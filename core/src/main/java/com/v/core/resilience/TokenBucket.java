@@ -0,0 +1,49 @@
+package com.v.core.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+// Rate limiter: permitsPerSecond tokens are added continuously up to burst, acquire(n) takes n tokens and sleeps
+// until they are there. Callers share the rate, a waiting caller holds the lock so later ones queue behind it.
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive, was " + permitsPerSecond);
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    public synchronized void acquire(int permits) throws InterruptedException {
+        refill();
+        while (tokens < permits) {
+            long waitNanos = (long) Math.ceil((permits - tokens) / permitsPerNano);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            refill();
+        }
+        tokens -= permits;
+    }
+
+    public synchronized boolean tryAcquire(int permits) {
+        refill();
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerNano);
+        refilledAt = now;
+    }
+}
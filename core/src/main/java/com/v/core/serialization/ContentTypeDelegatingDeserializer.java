@@ -0,0 +1,73 @@
+package com.v.core.serialization;
+
+import java.util.Map;
+
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * Reads binary and JSON encoded events from the same topic. Records tagged with the binary content type go
+ * through {@link EventBinaryCodec}, everything else is handed to the configured JSON deserializer, so both
+ * formats can be produced side by side while services migrate.
+ */
+public class ContentTypeDelegatingDeserializer implements Deserializer<Object> {
+
+    // class (or class name) of the deserializer used for records that are not binary, usually JsonDeserializer
+    public static final String JSON_DELEGATE = "content.type.json.delegate";
+
+    private Deserializer<?> jsonDelegate;
+
+    public ContentTypeDelegatingDeserializer() {
+    }
+
+    public ContentTypeDelegatingDeserializer(Deserializer<?> jsonDelegate) {
+        this.jsonDelegate = jsonDelegate;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (jsonDelegate == null) {
+            jsonDelegate = newDelegate(configs.get(JSON_DELEGATE));
+        }
+        jsonDelegate.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (EventBinaryCodec.isBinary(data)) {
+            return EventBinaryCodec.decode(data);
+        }
+        return jsonDelegate.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        // the magic byte is checked too: a dead letter republished as JSON still carries the original header
+        if (EventContentType.isBinary(headers) && EventBinaryCodec.isBinary(data)) {
+            return EventBinaryCodec.decode(data);
+        }
+        return jsonDelegate.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        if (jsonDelegate != null) {
+            jsonDelegate.close();
+        }
+    }
+
+    private static Deserializer<?> newDelegate(Object delegate) {
+        if (delegate == null) {
+            throw new ConfigException(JSON_DELEGATE + " must be set");
+        }
+        try {
+            Class<?> delegateClass = delegate instanceof Class<?> clazz ? clazz : Utils.loadClass(delegate.toString(), Object.class);
+            return (Deserializer<?>) Utils.newInstance(delegateClass);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new KafkaException("Could not create JSON delegate " + delegate, e);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.v.core.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.events.DepositRequestedEvent;
+import com.v.core.events.WithdrawalRequestedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * Compact binary form of the core events.
+ *
+ * <pre>
+ * magic(1) | schema version(1) | event type(1) | fields in declaration order
+ * </pre>
+ *
+ * Strings are a varint length (0 = null) followed by UTF-8 bytes, Integers a presence byte and a zigzag
+ * varint, BigDecimals a presence byte, a zigzag varint scale and the unscaled value either as zigzag
+ * varlong or, when it does not fit a long, as length-prefixed two's complement bytes. Field names are
+ * never written, so a new field means a new schema version and a reader that still understands the old one.
+ */
+public final class EventBinaryCodec {
+
+    // never '{' or '[', so a JSON body can not be mistaken for a binary one
+    static final byte MAGIC = (byte) 0xCE;
+    static final byte SCHEMA_VERSION = 1;
+
+    private static final byte PRODUCT_CREATED = 1;
+    private static final byte DEPOSIT_REQUESTED = 2;
+    private static final byte WITHDRAWAL_REQUESTED = 3;
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+    private static final byte BIG_UNSCALED = 2;
+
+    private EventBinaryCodec() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= 3 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Object event) {
+        Writer writer = new Writer();
+        writer.writeByte(MAGIC);
+        writer.writeByte(SCHEMA_VERSION);
+
+        if (event instanceof ProductCreatedEvent productCreated) {
+            writer.writeByte(PRODUCT_CREATED);
+            writer.writeString(productCreated.getProductId());
+            writer.writeString(productCreated.getTitle());
+            writer.writeDecimal(productCreated.getPrice());
+            writer.writeInteger(productCreated.getQuantity());
+        } else if (event instanceof DepositRequestedEvent deposit) {
+            writer.writeByte(DEPOSIT_REQUESTED);
+            writer.writeString(deposit.getSenderId());
+            writer.writeString(deposit.getRecepientId());
+            writer.writeDecimal(deposit.getAmount());
+        } else if (event instanceof WithdrawalRequestedEvent withdrawal) {
+            writer.writeByte(WITHDRAWAL_REQUESTED);
+            writer.writeString(withdrawal.getSenderId());
+            writer.writeString(withdrawal.getRecepientId());
+            writer.writeDecimal(withdrawal.getAmount());
+        } else {
+            throw new SerializationException("No binary schema for " +
+                    (event == null ? "null" : event.getClass().getName()));
+        }
+        return writer.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Not a binary encoded event");
+        }
+        Reader reader = new Reader(data, 1);
+        byte version = reader.readByte();
+        if (version != SCHEMA_VERSION) {
+            throw new SerializationException("Unsupported event schema version " + version);
+        }
+
+        byte type = reader.readByte();
+        return switch (type) {
+            case PRODUCT_CREATED -> new ProductCreatedEvent(reader.readString(), reader.readString(),
+                    reader.readDecimal(), reader.readInteger());
+            case DEPOSIT_REQUESTED -> new DepositRequestedEvent(reader.readString(), reader.readString(),
+                    reader.readDecimal());
+            case WITHDRAWAL_REQUESTED -> new WithdrawalRequestedEvent(reader.readString(), reader.readString(),
+                    reader.readDecimal());
+            default -> throw new SerializationException("Unknown event type " + type);
+        };
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[64];
+        private int position;
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            writeBytes(utf8);
+        }
+
+        void writeInteger(Integer value) {
+            if (value == null) {
+                writeByte(ABSENT);
+                return;
+            }
+            writeByte(PRESENT);
+            writeZigZag(value);
+        }
+
+        void writeDecimal(BigDecimal value) {
+            if (value == null) {
+                writeByte(ABSENT);
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                writeByte(PRESENT);
+                writeZigZag(value.scale());
+                writeZigZag(unscaled.longValue());
+            } else {
+                writeByte(BIG_UNSCALED);
+                writeZigZag(value.scale());
+                byte[] bytes = unscaled.toByteArray();
+                writeVarLong(bytes.length);
+                writeBytes(bytes);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        byte readByte() {
+            if (position >= data.length) {
+                throw new SerializationException("Truncated binary event");
+            }
+            return data[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in binary event");
+        }
+
+        long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || position + length > data.length) {
+                throw new SerializationException("Truncated binary event");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            int size = Math.toIntExact(length - 1);
+            if (size < 0 || position + size > data.length) {
+                throw new SerializationException("Truncated binary event");
+            }
+            String value = new String(data, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+
+        Integer readInteger() {
+            return readByte() == ABSENT ? null : (int) readZigZag();
+        }
+
+        BigDecimal readDecimal() {
+            byte flag = readByte();
+            if (flag == ABSENT) {
+                return null;
+            }
+            int scale = (int) readZigZag();
+            if (flag == PRESENT) {
+                return BigDecimal.valueOf(readZigZag(), scale);
+            }
+            return new BigDecimal(new BigInteger(readBytes(Math.toIntExact(readVarLong()))), scale);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.v.core.serialization;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Producer side of the binary codec, tags every record with the binary content type so
+// ContentTypeDelegatingDeserializer knows how to read it.
+public class EventBinarySerializer implements Serializer<Object> {
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return data == null ? null : EventBinaryCodec.encode(data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        EventContentType.markBinary(headers);
+        return EventBinaryCodec.encode(data);
+    }
+}
@@ -0,0 +1,35 @@
+package com.v.core.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+// Record header telling consumers how the value was written. Records without it are JSON,
+// which is what every producer wrote before the binary codec existed.
+public final class EventContentType {
+
+    public static final String HEADER = "content-type";
+
+    public static final String JSON = "application/json";
+    public static final String BINARY = "application/vnd.v.event+binary";
+
+    private static final byte[] BINARY_BYTES = BINARY.getBytes(StandardCharsets.UTF_8);
+
+    private EventContentType() {
+    }
+
+    static void markBinary(Headers headers) {
+        headers.remove(HEADER);
+        headers.add(HEADER, BINARY_BYTES);
+    }
+
+    static boolean isBinary(Headers headers) {
+        if (headers == null) {
+            return false;
+        }
+        Header header = headers.lastHeader(HEADER);
+        return header != null && Arrays.equals(header.value(), BINARY_BYTES);
+    }
+}
@@ -0,0 +1,63 @@
+package com.v.core.kafka;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveConcurrencyControllerTest {
+
+    private static final Duration TARGET_DRAIN = Duration.ofSeconds(60);
+
+    @Test
+    void testDesiredConcurrency_whenBacklogDrainsTooSlowly_scalesToDrainItInTime() {
+
+        // Act
+        // 6000 behind at 50 records/s is 120s with 1 consumer, 2 drain it in 60s
+        int desired = AdaptiveConcurrencyController.desiredConcurrency(1, 3, 6000, 50, 1000, 10, TARGET_DRAIN,
+                0, 3, 1);
+        // nothing committed since the last check, one more consumer at a time
+        int stalled = AdaptiveConcurrencyController.desiredConcurrency(1, 3, 6000, 0, 1000, 10, TARGET_DRAIN,
+                0, 3, 1);
+        // never more consumers than partitions
+        int capped = AdaptiveConcurrencyController.desiredConcurrency(2, 3, 600_000, 50, 1000, 10, TARGET_DRAIN,
+                0, 3, 1);
+
+        // Assert
+        assertEquals(2, desired);
+        assertEquals(2, stalled);
+        assertEquals(3, capped);
+    }
+
+    @Test
+    void testDesiredConcurrency_whenBacklogDrainsInTime_keepsConcurrency() {
+
+        // Act
+        int desired = AdaptiveConcurrencyController.desiredConcurrency(2, 3, 6000, 500, 1000, 10, TARGET_DRAIN,
+                0, 3, 1);
+        int belowScaleUpLag = AdaptiveConcurrencyController.desiredConcurrency(1, 3, 900, 0, 1000, 10, TARGET_DRAIN,
+                0, 3, 1);
+
+        // Assert
+        assertEquals(2, desired);
+        assertEquals(1, belowScaleUpLag);
+    }
+
+    @Test
+    void testDesiredConcurrency_whenIdleForEnoughChecks_scalesDownByOne() {
+
+        // Act
+        int notYet = AdaptiveConcurrencyController.desiredConcurrency(3, 3, 0, 0, 1000, 10, TARGET_DRAIN,
+                2, 3, 1);
+        int idle = AdaptiveConcurrencyController.desiredConcurrency(3, 3, 0, 0, 1000, 10, TARGET_DRAIN,
+                3, 3, 1);
+        int atMinimum = AdaptiveConcurrencyController.desiredConcurrency(1, 3, 0, 0, 1000, 10, TARGET_DRAIN,
+                3, 3, 1);
+
+        // Assert
+        assertEquals(3, notYet);
+        assertEquals(2, idle);
+        assertEquals(1, atMinimum);
+    }
+}
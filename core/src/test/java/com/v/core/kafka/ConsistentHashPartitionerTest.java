@@ -0,0 +1,110 @@
+package com.v.core.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashPartitionerTest {
+
+    private static final int KEYS = 10_000;
+
+    private ConsistentHashPartitioner partitioner;
+
+    @BeforeEach
+    void setUp() {
+        partitioner = new ConsistentHashPartitioner();
+        partitioner.configure(Map.of());
+    }
+
+    @Test
+    void testPartition_whenSameKey_alwaysPicksTheSamePartition() {
+
+        // Arrange
+        Cluster cluster = cluster("withdraw-money-topic", 3);
+        byte[] key = "account-42".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        int first = partitioner.partition("withdraw-money-topic", "account-42", key, null, null, cluster);
+
+        // Assert
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first, partitioner.partition("withdraw-money-topic", "account-42", key, null, null, cluster));
+        }
+        assertEquals(first, new ConsistentHashPartitioner().partition(key, 3));
+    }
+
+    @Test
+    void testPartition_spreadsKeysOverEveryPartition() {
+
+        // Arrange
+        int[] counts = new int[3];
+
+        // Act
+        for (int i = 0; i < KEYS; i++) {
+            counts[partitioner.partition(key(i), 3)]++;
+        }
+
+        // Assert
+        for (int count : counts) {
+            assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2, "unbalanced: " + count);
+        }
+    }
+
+    @Test
+    void testPartition_whenPartitionAdded_movesOnlyKeysToTheNewPartition() {
+
+        // Act
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int before = partitioner.partition(key(i), 3);
+            int after = partitioner.partition(key(i), 4);
+            if (before != after) {
+                moved++;
+                assertEquals(3, after);
+            }
+        }
+
+        // Assert
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "moved: " + moved);
+    }
+
+    @Test
+    void testPartition_whenNoKey_goesRoundRobin() {
+
+        // Arrange
+        Cluster cluster = cluster("deposit-money-topic", 3);
+
+        // Act
+        List<Integer> partitions = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            partitions.add(partitioner.partition("deposit-money-topic", null, null, null, null, cluster));
+        }
+
+        // Assert
+        assertEquals(List.of(0, 1, 2, 0, 1, 2), partitions);
+    }
+
+    private static byte[] key(int i) {
+        return ("account-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Cluster cluster(String topic, int partitions) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitionInfos = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            partitionInfos.add(new PartitionInfo(topic, i, node, new Node[] {node}, new Node[] {node}));
+        }
+        return new Cluster("test", List.of(node), partitionInfos, Set.of(), Set.of());
+    }
+}
@@ -0,0 +1,87 @@
+package com.v.core.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadLetterReplayerTest {
+
+    private static final long FAILED_AT = Instant.parse("2025-01-01T10:00:00Z").toEpochMilli();
+
+    @Test
+    void testMatches_whenFilteredByExceptionAndTimeRange_acceptsOnlyMatchingRecords() {
+
+        // Arrange
+        ConsumerRecord<byte[], byte[]> record = deadLetter("product-created-events-topic.DLT");
+        DeadLetterReplayRequest byCause = new DeadLetterReplayRequest("product-created-events-topic.DLT",
+                "RetryableException", null, null, null);
+        DeadLetterReplayRequest otherException = new DeadLetterReplayRequest("product-created-events-topic.DLT",
+                "java.lang.IllegalStateException", null, null, null);
+        DeadLetterReplayRequest inRange = new DeadLetterReplayRequest("product-created-events-topic.DLT", null,
+                Instant.parse("2025-01-01T09:00:00Z"), Instant.parse("2025-01-01T11:00:00Z"), null);
+        DeadLetterReplayRequest endsAtFailure = new DeadLetterReplayRequest("product-created-events-topic.DLT", null,
+                null, Instant.ofEpochMilli(FAILED_AT), null);
+
+        // Act & Assert
+        assertTrue(DeadLetterReplayer.matches(record, byCause));
+        assertFalse(DeadLetterReplayer.matches(record, otherException));
+        assertTrue(DeadLetterReplayer.matches(record, inRange));
+        assertFalse(DeadLetterReplayer.matches(record, endsAtFailure));
+    }
+
+    @Test
+    void testToOriginalTopic_whenGivenDeadLetter_keepsKeyValueAndOriginalHeadersOnly() {
+
+        // Act
+        ProducerRecord<byte[], byte[]> fromHeader =
+                DeadLetterReplayer.toOriginalTopic(deadLetter("product-created-events-topic.DLT"));
+        ConsumerRecord<byte[], byte[]> withoutOriginalTopic = new ConsumerRecord<>("deposit-money-topic-dlt", 0, 0L,
+                bytes("key"), bytes("value"));
+        ProducerRecord<byte[], byte[]> fromSuffix = DeadLetterReplayer.toOriginalTopic(withoutOriginalTopic);
+
+        // Assert
+        assertEquals("product-created-events-topic", fromHeader.topic());
+        assertArrayEquals(bytes("key"), fromHeader.key());
+        assertArrayEquals(bytes("value"), fromHeader.value());
+        assertEquals(List.of("messageId"), headerNames(fromHeader));
+        assertEquals("deposit-money-topic", fromSuffix.topic());
+    }
+
+    private static ConsumerRecord<byte[], byte[]> deadLetter(String topic) {
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>(topic, 0, 0L, FAILED_AT,
+                TimestampType.CREATE_TIME, 3, 5, bytes("key"), bytes("value"),
+                new RecordHeaders(), Optional.empty());
+        record.headers().add("messageId", bytes("m-1"));
+        record.headers().add(DeadLetterReplayer.ORIGINAL_TOPIC_HEADER, bytes("product-created-events-topic"));
+        record.headers().add(DeadLetterReplayer.EXCEPTION_HEADER,
+                bytes("org.springframework.kafka.listener.ListenerExecutionFailedException"));
+        record.headers().add(DeadLetterReplayer.EXCEPTION_CAUSE_HEADER,
+                bytes("com.v.emailnotification.error.RetryableException"));
+        record.headers().add("retry_topic-attempts", new byte[] {0, 0, 0, 4});
+        return record;
+    }
+
+    private static List<String> headerNames(ProducerRecord<byte[], byte[]> record) {
+        return StreamSupport.stream(record.headers().spliterator(), false)
+                .map(Header::key)
+                .toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
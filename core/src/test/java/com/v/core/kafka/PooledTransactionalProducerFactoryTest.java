@@ -0,0 +1,107 @@
+package com.v.core.kafka;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.NoProducerAvailableException;
+import org.springframework.kafka.core.ProducerPostProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PooledTransactionalProducerFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PooledTransactionalProducerFactory<String, String> producerFactory;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        producerFactory = new PooledTransactionalProducerFactory<>(
+                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092",
+                        ProducerConfig.TRANSACTIONAL_ID_CONFIG, "test-"),
+                2, Duration.ofMillis(200), meterRegistry) {
+            @Override
+            protected Producer<String, String> createRawProducer(Map<String, Object> rawConfigs) {
+                // stands in for the KafkaProducer, post-processed the same way
+                Producer<String, String> producer = new MockProducer<>(true, null, new StringSerializer(),
+                        new StringSerializer());
+                for (ProducerPostProcessor<String, String> postProcessor : getPostProcessors()) {
+                    producer = postProcessor.apply(producer);
+                }
+                return producer;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        producerFactory.destroy();
+    }
+
+    @Test
+    void testPrewarm_opensThePoolOnceAndReusesIt() {
+
+        // Act
+        int opened = producerFactory.prewarm();
+        try (Producer<String, String> producer = producerFactory.createProducer()) {
+            producer.beginTransaction();
+            producer.send(new ProducerRecord<>("topic", "value"));
+            producer.commitTransaction();
+        }
+
+        // Assert
+        assertEquals(2, opened);
+        assertEquals(2, meterRegistry.get("kafka.producer.created").counter().count());
+        assertEquals(2, meterRegistry.get("kafka.producer.transaction").tag("phase", "init").timer().count());
+        assertEquals(1, meterRegistry.get("kafka.producer.transaction").tag("phase", "commit").timer().count());
+        assertEquals(0, meterRegistry.get("kafka.producer.pool.in-use").gauge().value());
+    }
+
+    @Test
+    void testCreateProducer_whenPoolIsExhausted_waitsForAProducerToComeBack() throws Exception {
+
+        // Arrange
+        Producer<String, String> first = producerFactory.createProducer();
+        Producer<String, String> second = producerFactory.createProducer();
+
+        // Act
+        CompletableFuture<Producer<String, String>> third =
+                CompletableFuture.supplyAsync(producerFactory::createProducer);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertFalse(third.isDone());
+        first.close();
+
+        // Assert
+        third.get(1, TimeUnit.SECONDS).close();
+        second.close();
+        assertEquals(2, meterRegistry.get("kafka.producer.created").counter().count());
+        assertEquals(3, meterRegistry.get("kafka.producer.pool.wait").timer().count());
+    }
+
+    @Test
+    void testCreateProducer_whenNoProducerComesBackInTime_fails() {
+
+        // Arrange
+        Producer<String, String> first = producerFactory.createProducer();
+        Producer<String, String> second = producerFactory.createProducer();
+
+        // Act & Assert
+        assertThrows(NoProducerAvailableException.class, producerFactory::createProducer);
+        assertEquals(1, meterRegistry.get("kafka.producer.pool.timeouts").counter().count());
+        first.close();
+        second.close();
+    }
+}
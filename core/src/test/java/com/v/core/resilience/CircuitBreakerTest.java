@@ -0,0 +1,83 @@
+package com.v.core.resilience;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testOnFailure_whenFailureRateReachesThreshold_opensAndRejectsCalls() {
+
+        // Arrange
+        CircuitBreaker circuitBreaker = new CircuitBreaker("remote", 50, 4, 4, Duration.ofMinutes(1), meterRegistry);
+        List<CircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+        circuitBreaker.addStateListener(transitions::add);
+
+        // Act
+        circuitBreaker.execute(() -> "ok");
+        circuitBreaker.execute(() -> "ok");
+        circuitBreaker.onFailure();
+        CircuitBreaker.State beforeMinimumCalls = circuitBreaker.state();
+        circuitBreaker.onFailure();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, beforeMinimumCalls);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(List.of(CircuitBreaker.State.OPEN), transitions);
+        assertThrows(CircuitBreakerOpenException.class, () -> circuitBreaker.execute(() -> "not called"));
+        assertEquals(1.0, meterRegistry.get("circuit.breaker.calls").tag("outcome", "rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("circuit.breaker.state").tag("state", "open").gauge().value());
+    }
+
+    @Test
+    void testTryAcquirePermission_whenOpenDurationElapsed_letsOneProbeThroughAndClosesOnSuccess() throws Exception {
+
+        // Arrange
+        CircuitBreaker circuitBreaker = new CircuitBreaker("remote", 100, 2, 1, Duration.ofMillis(50), meterRegistry);
+        List<CircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+        circuitBreaker.addStateListener(transitions::add);
+        circuitBreaker.onFailure();
+
+        // Act
+        Thread.sleep(200);
+        boolean probe = circuitBreaker.tryAcquirePermission();
+        boolean secondCall = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.onSuccess();
+
+        // Assert
+        assertTrue(probe);
+        assertFalse(secondCall);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+    }
+
+    @Test
+    void testExecuteAsync_whenHalfOpenProbeFails_opensAgain() throws Exception {
+
+        // Arrange
+        CircuitBreaker circuitBreaker = new CircuitBreaker("remote", 100, 2, 1, Duration.ofMillis(50), meterRegistry);
+        circuitBreaker.onFailure();
+        Thread.sleep(200);
+
+        // Act
+        circuitBreaker.executeAsync(() -> CompletableFuture.failedFuture(
+                new IllegalStateException("still down"))).exceptionally(ex -> null).join();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertTrue(CircuitBreakerOpenException.isCause(new RuntimeException(new CircuitBreakerOpenException("remote"))));
+    }
+}
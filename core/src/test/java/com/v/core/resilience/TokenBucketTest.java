@@ -0,0 +1,30 @@
+package com.v.core.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void testAcquire_whenBurstIsUsedUp_waitsForTheRate() throws Exception {
+
+        // Arrange
+        TokenBucket tokenBucket = new TokenBucket(100, 10);
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 0; i < 30; i++) {
+            tokenBucket.acquire(1);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        // 10 from the burst, the other 20 at 100 per second
+        assertTrue(elapsedMs >= 180, "took " + elapsedMs + " ms");
+        assertFalse(tokenBucket.tryAcquire(5));
+    }
+}
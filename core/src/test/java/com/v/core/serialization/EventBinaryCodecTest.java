@@ -0,0 +1,88 @@
+package com.v.core.serialization;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.events.DepositRequestedEvent;
+import com.v.core.events.WithdrawalRequestedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventBinaryCodecTest {
+
+    @Test
+    void testEncodeDecode_whenGivenEveryCoreEvent_returnsEqualEvents() {
+
+        // Arrange
+        ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent("p-1", "iPhone 11 – 128 GB",
+                new BigDecimal("600.99"), 3);
+        DepositRequestedEvent depositEvent = new DepositRequestedEvent("sender", "recepient", new BigDecimal("-12.5"));
+        WithdrawalRequestedEvent withdrawalEvent = new WithdrawalRequestedEvent("sender", "recepient",
+                new BigDecimal("123456789012345678901234567890.123456"));
+
+        // Act
+        ProductCreatedEvent decodedProduct = (ProductCreatedEvent) EventBinaryCodec.decode(EventBinaryCodec.encode(productCreatedEvent));
+        DepositRequestedEvent decodedDeposit = (DepositRequestedEvent) EventBinaryCodec.decode(EventBinaryCodec.encode(depositEvent));
+        WithdrawalRequestedEvent decodedWithdrawal = (WithdrawalRequestedEvent) EventBinaryCodec.decode(EventBinaryCodec.encode(withdrawalEvent));
+
+        // Assert
+        assertEquals(productCreatedEvent.getProductId(), decodedProduct.getProductId());
+        assertEquals(productCreatedEvent.getTitle(), decodedProduct.getTitle());
+        assertEquals(productCreatedEvent.getPrice(), decodedProduct.getPrice());
+        assertEquals(productCreatedEvent.getQuantity(), decodedProduct.getQuantity());
+        assertEquals(depositEvent.getAmount(), decodedDeposit.getAmount());
+        assertEquals(depositEvent.getRecepientId(), decodedDeposit.getRecepientId());
+        assertEquals(withdrawalEvent.getAmount(), decodedWithdrawal.getAmount());
+        assertEquals(withdrawalEvent.getSenderId(), decodedWithdrawal.getSenderId());
+    }
+
+    @Test
+    void testEncodeDecode_whenFieldsAreNull_keepsThemNull() {
+
+        // Arrange
+        ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent("p-2", null, null, null);
+
+        // Act
+        ProductCreatedEvent decoded = (ProductCreatedEvent) EventBinaryCodec.decode(EventBinaryCodec.encode(productCreatedEvent));
+
+        // Assert
+        assertEquals("p-2", decoded.getProductId());
+        assertNull(decoded.getTitle());
+        assertNull(decoded.getPrice());
+        assertNull(decoded.getQuantity());
+    }
+
+    @Test
+    void testDeserialize_whenRecordsOfBothFormatsArrive_picksCodecByContentTypeHeader() {
+
+        // Arrange
+        ContentTypeDelegatingDeserializer deserializer = new ContentTypeDelegatingDeserializer(new StringDeserializer());
+        EventBinarySerializer serializer = new EventBinarySerializer();
+
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        byte[] binary = serializer.serialize("topic", binaryHeaders,
+                new DepositRequestedEvent("a", "b", BigDecimal.TEN));
+        byte[] json = "{\"senderId\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+
+        // a JSON body that still carries the binary header, as dead letters republished as JSON do
+        RecordHeaders staleHeaders = new RecordHeaders();
+        staleHeaders.add(EventContentType.HEADER, EventContentType.BINARY.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        Object fromBinary = deserializer.deserialize("topic", binaryHeaders, binary);
+        Object fromJson = deserializer.deserialize("topic", new RecordHeaders(), json);
+        Object fromStaleHeader = deserializer.deserialize("topic", staleHeaders, json);
+
+        // Assert
+        assertInstanceOf(DepositRequestedEvent.class, fromBinary);
+        assertEquals(BigDecimal.TEN, ((DepositRequestedEvent) fromBinary).getAmount());
+        assertEquals("{\"senderId\":\"a\"}", fromJson);
+        assertEquals("{\"senderId\":\"a\"}", fromStaleHeader);
+    }
+}
@@ -1,20 +1,31 @@
 package com.v.depositmicroservice.config;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.v.core.error.NotRetryableException;
 import com.v.core.error.RetryableException;
+import com.v.core.kafka.AdaptiveConcurrencyController;
+import com.v.core.kafka.ConsistentHashPartitioner;
+import com.v.core.kafka.DeadLetterReplayer;
+import com.v.core.serialization.ContentTypeDelegatingDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.kafka.annotation.EnableKafkaRetryTopic;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
@@ -22,11 +33,16 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.retrytopic.RetryTopicSchedulerWrapper;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.backoff.FixedBackOff;
 @Configuration
+@EnableKafkaRetryTopic
 public class KafkaConsumerConfiguration {
 
 	@Autowired
@@ -40,7 +56,9 @@ public class KafkaConsumerConfiguration {
 				environment.getProperty("spring.kafka.consumer.bootstrap-servers"));
 		config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
 		config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-		config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+		// binary or JSON, decided per record by its content-type header
+		config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, ContentTypeDelegatingDeserializer.class);
+		config.put(ContentTypeDelegatingDeserializer.JSON_DELEGATE, JsonDeserializer.class);
 		config.put(ConsumerConfig.GROUP_ID_CONFIG, environment.getProperty("spring.kafka.consumer.group-id"));
 		config.put(JsonDeserializer.TRUSTED_PACKAGES,
 				environment.getProperty("spring.kafka.consumer.properties.spring.json.trusted.packages"));
@@ -63,8 +81,7 @@ public class KafkaConsumerConfiguration {
 					return new TopicPartition(record.topic() + ".DLT", record.partition());
 				});
 
-		DefaultErrorHandler errorHandler = new DefaultErrorHandler(new DeadLetterPublishingRecoverer(kafkaTemplate),
-				new FixedBackOff(5000, 3));
+		DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, new FixedBackOff(5000, 3));
 		errorHandler.addNotRetryableExceptions(NotRetryableException.class);
 		errorHandler.addRetryableExceptions(RetryableException.class);
 		factory.setCommonErrorHandler(errorHandler);
@@ -72,6 +89,70 @@ public class KafkaConsumerConfiguration {
 		return factory;
 	}
 
+	// sends dead letters back to their topic on request, see DeadLetterReplayController. Partitioned like the
+	// transfer service does it, so a replayed deposit goes back to its account's partition
+	@Bean
+	DeadLetterReplayer deadLetterReplayer(MeterRegistry meterRegistry) {
+		return new DeadLetterReplayer(
+				Map.of(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG,
+						environment.getProperty("spring.kafka.consumer.bootstrap-servers"),
+						ProducerConfig.PARTITIONER_CLASS_CONFIG, ConsistentHashPartitioner.class,
+						ConsistentHashPartitioner.VIRTUAL_NODES_CONFIG,
+						environment.getProperty("kafka.producer.consistent-hash.virtual-nodes", Integer.class, 128)),
+				environment.getProperty("kafka.dlt.replay.rate-per-second", Double.class, 500.0),
+				environment.getProperty("kafka.dlt.replay.batch-size", Integer.class, 500),
+				meterRegistry);
+	}
+
+	// scales the listener containers between min-concurrency and the partition count of their topics,
+	// from consumer group lag and how fast it drains (see AdaptiveConcurrencyController)
+	@Bean
+	@ConditionalOnProperty(name = "kafka.listener.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+	AdaptiveConcurrencyController adaptiveConcurrencyController(KafkaListenerEndpointRegistry registry,
+			MeterRegistry meterRegistry) {
+		return new AdaptiveConcurrencyController(registry,
+				Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+						environment.getProperty("spring.kafka.consumer.bootstrap-servers")),
+				meterRegistry,
+				Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.interval-ms", Long.class, 10000L)),
+				environment.getProperty("kafka.listener.adaptive.min-concurrency", Integer.class, 1),
+				environment.getProperty("kafka.listener.adaptive.max-concurrency", Integer.class, 3),
+				environment.getProperty("kafka.listener.adaptive.scale-up-lag", Long.class, 1000L),
+				environment.getProperty("kafka.listener.adaptive.scale-down-lag", Long.class, 10L),
+				Duration.ofSeconds(environment.getProperty("kafka.listener.adaptive.target-drain-seconds",
+						Long.class, 60L)),
+				environment.getProperty("kafka.listener.adaptive.idle-checks", Integer.class, 6),
+				Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.cooldown-ms", Long.class, 60000L)));
+	}
+
+	// A RetryableException moves the record to a delay topic (deposit-money-topic-retry-1000, -2000, -4000 by default)
+	// where its own consumer retries it once the back off is over, then to .DLT. The main partition keeps going
+	// instead of sleeping through FixedBackOff, which is only left for records outside the retry topics.
+	@Bean
+	RetryTopicConfiguration retryTopicConfiguration(KafkaTemplate<String, Object> kafkaTemplate) {
+		return RetryTopicConfigurationBuilder.newInstance()
+				.exponentialBackoff(
+						environment.getProperty("kafka.retry.initial-interval-ms", Long.class, 1000L),
+						environment.getProperty("kafka.retry.multiplier", Double.class, 2.0),
+						environment.getProperty("kafka.retry.max-interval-ms", Long.class, 10000L))
+				.maxAttempts(environment.getProperty("kafka.retry.attempts", Integer.class, 4))
+				.retryOn(RetryableException.class)
+				.traversingCauses()
+				.dltSuffix(".DLT")
+				.autoCreateTopicsWith(environment.getProperty("kafka.retry.topic-partitions", Integer.class, 1),
+						environment.getProperty("kafka.retry.topic-replication", Short.class, (short) -1))
+				.includeTopic("deposit-money-topic")
+				.create(kafkaTemplate);
+	}
+
+	// resumes a retry topic partition once the back off of its first record is over
+	@Bean
+	RetryTopicSchedulerWrapper retryTopicSchedulerWrapper() {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setThreadNamePrefix("retry-topic-");
+		return new RetryTopicSchedulerWrapper(scheduler);
+	}
+
 	@Bean
 	KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory) {
 		return new KafkaTemplate<>(producerFactory);
@@ -0,0 +1,103 @@
+package com.v.depositmicroservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import com.v.core.error.RetryableException;
+import com.v.core.events.DepositRequestedEvent;
+import com.v.depositmicroservice.handler.DepositRequestedEventHandler;
+
+// the class level @KafkaListener of DepositRequestedEventHandler has to be picked up by the global
+// RetryTopicConfiguration, otherwise the container's blocking FixedBackOff(5000, 3) handles its failures
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, count = 1, controlledShutdown = true, topics = "deposit-money-topic")
+@TestPropertySource(properties = {
+		"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+		"kafka.retry.topic-partitions=1",
+		"kafka.retry.initial-interval-ms=100",
+		"kafka.retry.max-interval-ms=400",
+		"kafka.listener.adaptive.enabled=false"
+})
+class DepositRequestedEventRetryTopicIntegrationTest {
+
+	private static final String TOPIC = "deposit-money-topic";
+
+	@MockitoSpyBean
+	DepositRequestedEventHandler depositRequestedEventHandler;
+
+	@Autowired
+	KafkaTemplate<String, Object> kafkaTemplate;
+
+	@Autowired
+	EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	@Autowired
+	KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+	@BeforeEach
+	void setUp() {
+		for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+			ContainerTestUtils.waitForAssignment(container, 1);
+		}
+	}
+
+	@Test
+	void testRetryableFailure_goesThroughTheRetryTopicsToTheDlt() throws Exception {
+
+		// Arrange
+		doThrow(new RetryableException("Account service unavailable"))
+				.when(depositRequestedEventHandler).handle(any(DepositRequestedEvent.class));
+
+		// Act
+		kafkaTemplate.send(TOPIC, "r-1", new DepositRequestedEvent("s-1", "r-1", new BigDecimal(25))).get();
+
+		// Assert
+		// kafka.retry.attempts=4: the first delivery and one from each of the three delay topics
+		verify(depositRequestedEventHandler, timeout(15000).times(4)).handle(any(DepositRequestedEvent.class));
+
+		Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("retry-topic-test", "false",
+				embeddedKafkaBroker);
+		consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		List<String> topics = List.of(TOPIC + "-retry-100", TOPIC + "-retry-200", TOPIC + "-retry-400",
+				TOPIC + ".DLT");
+		Map<String, Integer> recordsPerTopic = new TreeMap<>();
+		try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+				new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+			consumer.subscribe(topics);
+			for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10),
+					topics.size())) {
+				recordsPerTopic.merge(record.topic(), 1, Integer::sum);
+			}
+		}
+		assertEquals(Map.of(TOPIC + "-retry-100", 1, TOPIC + "-retry-200", 1, TOPIC + "-retry-400", 1,
+				TOPIC + ".DLT", 1), recordsPerTopic);
+	}
+}
@@ -0,0 +1,106 @@
+package com.v.emailnotification.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.resilience.CircuitBreaker;
+import com.v.emailnotification.error.NotRetryableException;
+import com.v.emailnotification.error.RetryableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+// The remote call made for every new product, shared by all listener modes.
+// Unreachable service -> RetryableException, anything else that goes wrong -> NotRetryableException.
+// Both go through the circuit breaker: while it is open calls fail fast with CircuitBreakerOpenException, which the
+// listener modes retry without limit instead of sending records to the DLT (see ListenerCircuitBreakerPauser).
+@Component
+public class NotificationClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
+    private final String requestUrl;
+    private final HttpRequest request;
+    private final CircuitBreaker circuitBreaker;
+
+    public NotificationClient(RestTemplate restTemplate, HttpClient httpClient, CircuitBreaker circuitBreaker,
+                              @Value("${email.notification.url:http://localhost:8082/response/200}") String requestUrl) {
+        this.restTemplate = restTemplate;
+        this.httpClient = httpClient;
+        this.circuitBreaker = circuitBreaker;
+        this.requestUrl = requestUrl;
+        this.request = HttpRequest.newBuilder(URI.create(requestUrl)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    // the same call without holding a thread while it is in flight, used by email.listener.mode=concurrent
+    public CompletableFuture<Void> productCreatedAsync(ProductCreatedEvent productCreatedEvent) {
+        return circuitBreaker.executeAsync(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, ex) -> {
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof IOException) {
+                        LOGGER.error(cause.getMessage());
+                        throw new RetryableException(cause);
+                    }
+                    if (cause != null) {
+                        LOGGER.error(cause.getMessage());
+                        throw new NotRetryableException(cause);
+                    }
+                    if (response.statusCode() != HttpStatus.OK.value()) {
+                        LOGGER.error("{} from {}", response.statusCode(), requestUrl);
+                        throw new NotRetryableException(response.statusCode() + " from " + requestUrl);
+                    }
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Received response from a remote service for {}: {}",
+                                productCreatedEvent.getProductId(), response.body());
+                    }
+                    return null;
+                }));
+    }
+
+    // CircuitBreakerOpenException is thrown as is, it must not turn into a NotRetryableException
+    public void productCreated(ProductCreatedEvent productCreatedEvent) {
+        circuitBreaker.execute(() -> {
+            call(productCreatedEvent);
+            return null;
+        });
+    }
+
+    private void call(ProductCreatedEvent productCreatedEvent) {
+        try {
+
+            // simulating retryable exception
+            ResponseEntity<String> response = restTemplate.exchange(requestUrl, HttpMethod.GET, null, String.class);
+
+            if (response.getStatusCode().value() == HttpStatus.OK.value() && LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Received response from a remote service for {}: {}",
+                        productCreatedEvent.getProductId(), response.getBody());
+            }
+        } catch (ResourceAccessException ex) {
+            LOGGER.error(ex.getMessage());
+            throw new RetryableException(ex);
+        } catch (HttpServerErrorException ex) {
+            LOGGER.error(ex.getMessage());
+            throw new NotRetryableException(ex);
+        } catch (Exception ex) {
+            LOGGER.error(ex.getMessage());
+            throw new NotRetryableException(ex);
+        }
+    }
+}
@@ -1,27 +1,49 @@
 package com.v.emailnotification.config;
 
+import com.v.core.kafka.AdaptiveConcurrencyController;
+import com.v.core.kafka.DeadLetterReplayer;
+import com.v.core.resilience.CircuitBreaker;
+import com.v.core.resilience.CircuitBreakerOpenException;
+import com.v.core.serialization.ContentTypeDelegatingDeserializer;
+import com.v.emailnotification.dedupe.DuplicateSkippingDeserializer;
+import com.v.emailnotification.dedupe.ProcessedMessageCache;
 import com.v.emailnotification.error.NotRetryableException;
 import com.v.emailnotification.error.RetryableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.*;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.HashMap;
 
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.retrytopic.RetryTopicSchedulerWrapper;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.backoff.FixedBackOff;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
@@ -29,6 +51,9 @@ import org.springframework.web.client.RestTemplate;
 @Configuration
 public class KafkaConsumerConfiguration {
 
+    // retry interval for records that failed on an open circuit breaker
+    static final long CIRCUIT_OPEN_BACK_OFF_MS = 1000;
+
     @Autowired
     Environment environment;
 
@@ -37,9 +62,32 @@ public class KafkaConsumerConfiguration {
         return new RestTemplate();
     }
 
+    // non-blocking client with a keep-alive connection pool, for email.listener.mode=concurrent
+    @Bean
+    public HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
 
+    // trips after failure-rate-threshold % of the last sliding-window-size calls failed (once minimum-calls were made),
+    // stays open for open-duration-ms, see ListenerCircuitBreakerPauser
     @Bean
-    ConsumerFactory<String, Object> consumerFactory() {
+    public CircuitBreaker notificationCircuitBreaker(MeterRegistry meterRegistry) {
+        return new CircuitBreaker("notification-service",
+                environment.getProperty("email.notification.circuit-breaker.failure-rate-threshold", Integer.class, 50),
+                environment.getProperty("email.notification.circuit-breaker.sliding-window-size", Integer.class, 20),
+                environment.getProperty("email.notification.circuit-breaker.minimum-calls", Integer.class, 10),
+                Duration.ofMillis(environment.getProperty("email.notification.circuit-breaker.open-duration-ms",
+                        Long.class, 30000L)),
+                meterRegistry);
+    }
+
+
+    @Bean
+    ConsumerFactory<String, Object> consumerFactory(ProcessedMessageCache processedMessageCache,
+                                                    MeterRegistry meterRegistry) {
         Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,
                 environment.getProperty("spring.kafka.consumer.bootstrap-servers"));
@@ -53,8 +101,9 @@ public class KafkaConsumerConfiguration {
         config.put(ConsumerConfig.GROUP_ID_CONFIG,
                 environment.getProperty("spring.kafka.consumer.group-id"));
 
-        // Error handling deserializer configuration
-        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
+        // Error handling deserializer configuration, its delegate is set up below
+        // binary or JSON, decided per record by its content-type header
+        config.put(ContentTypeDelegatingDeserializer.JSON_DELEGATE, JsonDeserializer.class.getName());
 
         // JSON deserializer configuration
         config.put(JsonDeserializer.TRUSTED_PACKAGES,
@@ -62,20 +111,39 @@ public class KafkaConsumerConfiguration {
         config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.v.core.ProductCreatedEvent");
         config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
 
-        return new DefaultKafkaConsumerFactory<>(config);
+        // recently processed message ids are dropped by their header before the payload is parsed,
+        // one deserializer chain per consumer
+        return new DefaultKafkaConsumerFactory<>(config, StringDeserializer::new,
+                () -> new ErrorHandlingDeserializer<>(new DuplicateSkippingDeserializer(
+                        new ContentTypeDelegatingDeserializer(), processedMessageCache, meterRegistry)));
     }
 
+    // Configure dead letter publishing with explicit destination
     @Bean
-    ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
-            ConsumerFactory<String, Object> consumerFactory,
-            KafkaTemplate<String,Object> kafkaTemplate) {
-
-        // Configure dead letter publishing with explicit destination
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+    DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<String,Object> kafkaTemplate) {
+        return new DeadLetterPublishingRecoverer(kafkaTemplate,
                 (record, ex) -> {
                     // Route to DLT topic
                     return new TopicPartition(record.topic() + ".DLT", record.partition());
                 });
+    }
+
+    // sends dead letters back to their topic on request, see DeadLetterReplayController
+    @Bean
+    DeadLetterReplayer deadLetterReplayer(MeterRegistry meterRegistry) {
+        return new DeadLetterReplayer(
+                Map.of(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG,
+                        environment.getProperty("spring.kafka.producer.bootstrap-servers")),
+                environment.getProperty("kafka.dlt.replay.rate-per-second", Double.class, 500.0),
+                environment.getProperty("kafka.dlt.replay.batch-size", Integer.class, 500),
+                meterRegistry);
+    }
+
+    @Bean
+    ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory,
+            DeadLetterPublishingRecoverer recoverer,
+            ProcessedMessageCache processedMessageCache) {
 
         //provide error handling capablities for kafka consumers used to handle message  exception
         DefaultErrorHandler errorHandler = new DefaultErrorHandler(
@@ -86,15 +154,119 @@ public class KafkaConsumerConfiguration {
         // Configure which exceptions to retry and which to send to DLT immediately
         errorHandler.addNotRetryableExceptions(NotRetryableException.class);
         errorHandler.addRetryableExceptions(RetryableException.class);
+        // an open circuit breaker is not the record's fault, keep retrying it until the breaker lets calls through;
+        // the containers are paused meanwhile so this does not spin
+        errorHandler.addRetryableExceptions(CircuitBreakerOpenException.class);
+        errorHandler.setBackOffFunction((record, ex) -> CircuitBreakerOpenException.isCause(ex)
+                ? new FixedBackOff(CIRCUIT_OPEN_BACK_OFF_MS, FixedBackOff.UNLIMITED_ATTEMPTS)
+                : null);
 
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         //register error handler
         factory.setCommonErrorHandler(errorHandler);
 
+        // duplicates DuplicateSkippingDeserializer did not parse never reach a listener, their offsets are still
+        // acked (manual ack modes) so commits move past them
+        factory.setRecordFilterStrategy(DuplicateSkippingDeserializer::isSkipped);
+        factory.setAckDiscarded(true);
+
+        // batch: listeners get a whole poll (see ProductCreatedEventBatchHandler), record: one record per call
+        String listenerMode = environment.getProperty("email.listener.mode", "record");
+        factory.setBatchListener("batch".equalsIgnoreCase(listenerMode));
+
+        // concurrent, key-ordered: records are acked from the HTTP callbacks or key workers, out of order. With async
+        // acks the container commits a partition only up to its highest contiguous acked offset, and pauses the
+        // consumer until the previous poll is fully acked
+        // (see ProductCreatedEventConcurrentHandler, ProductCreatedEventKeyOrderedHandler)
+        if ("concurrent".equalsIgnoreCase(listenerMode) || "key-ordered".equalsIgnoreCase(listenerMode)) {
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+            factory.getContainerProperties().setAsyncAcks(true);
+        }
+
+        // batch: dedupe filters follow the partitions this consumer owns, rebuilt before the first record of an
+        // assignment; the other modes do not read them
+        if ("batch".equalsIgnoreCase(listenerMode)) {
+            factory.getContainerProperties().setConsumerRebalanceListener(dedupeFilterRebalanceListener(
+                    processedMessageCache));
+        }
+
         return factory;
     }
 
+    private static ConsumerAwareRebalanceListener dedupeFilterRebalanceListener(
+            ProcessedMessageCache processedMessageCache) {
+        return new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                processedMessageCache.assign(partitions.stream().map(TopicPartition::partition).toList());
+            }
+
+            @Override
+            public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                processedMessageCache.revoke(partitions.stream().map(TopicPartition::partition).toList());
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                processedMessageCache.revoke(partitions.stream().map(TopicPartition::partition).toList());
+            }
+        };
+    }
+
+    // scales the listener containers between min-concurrency and the partition count of their topics,
+    // from consumer group lag and how fast it drains (see AdaptiveConcurrencyController)
+    @Bean
+    @ConditionalOnProperty(name = "kafka.listener.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+    AdaptiveConcurrencyController adaptiveConcurrencyController(KafkaListenerEndpointRegistry registry,
+                                                                MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyController(registry,
+                Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                        environment.getProperty("spring.kafka.consumer.bootstrap-servers")),
+                meterRegistry,
+                Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.interval-ms", Long.class, 10000L)),
+                environment.getProperty("kafka.listener.adaptive.min-concurrency", Integer.class, 1),
+                environment.getProperty("kafka.listener.adaptive.max-concurrency", Integer.class, 3),
+                environment.getProperty("kafka.listener.adaptive.scale-up-lag", Long.class, 1000L),
+                environment.getProperty("kafka.listener.adaptive.scale-down-lag", Long.class, 10L),
+                Duration.ofSeconds(environment.getProperty("kafka.listener.adaptive.target-drain-seconds",
+                        Long.class, 60L)),
+                environment.getProperty("kafka.listener.adaptive.idle-checks", Integer.class, 6),
+                Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.cooldown-ms", Long.class, 60000L)));
+    }
+
+    /*
+    record mode: a record failing with RetryableException is moved to a delay topic
+    (product-created-events-topic-retry-1000, -2000, -4000 by default) and retried there by its own consumer once its
+    back off is over, then sent to .DLT. The main partition keeps going instead of sleeping through FixedBackOff.
+    Other exceptions go to .DLT straight away. Batch, concurrent and key-ordered modes keep their own retries.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "email.listener.mode", havingValue = "record", matchIfMissing = true)
+    RetryTopicConfiguration retryTopicConfiguration(KafkaTemplate<String, Object> kafkaTemplate) {
+        return RetryTopicConfigurationBuilder.newInstance()
+                .exponentialBackoff(
+                        environment.getProperty("kafka.retry.initial-interval-ms", Long.class, 1000L),
+                        environment.getProperty("kafka.retry.multiplier", Double.class, 2.0),
+                        environment.getProperty("kafka.retry.max-interval-ms", Long.class, 10000L))
+                .maxAttempts(environment.getProperty("kafka.retry.attempts", Integer.class, 4))
+                .retryOn(RetryableException.class)
+                .traversingCauses()
+                .dltSuffix(".DLT")
+                .autoCreateTopicsWith(environment.getProperty("kafka.retry.topic-partitions", Integer.class, 1),
+                        environment.getProperty("kafka.retry.topic-replication", Short.class, (short) -1))
+                .includeTopic("product-created-events-topic")
+                .create(kafkaTemplate);
+    }
+
+    // resumes a retry topic partition once the back off of its first record is over
+    @Bean
+    RetryTopicSchedulerWrapper retryTopicSchedulerWrapper() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("retry-topic-");
+        return new RetryTopicSchedulerWrapper(scheduler);
+    }
+
     //creating template for dead topic
     @Bean
     KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory) {
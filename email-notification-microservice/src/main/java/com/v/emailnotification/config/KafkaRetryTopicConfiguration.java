@@ -0,0 +1,20 @@
+package com.v.emailnotification.config;
+
+import com.v.core.resilience.CircuitBreakerOpenException;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+import org.springframework.util.backoff.FixedBackOff;
+
+// replaces @EnableKafkaRetryTopic so the retry topic containers get blocking retries as well:
+// a record that failed on an open circuit breaker stays where it is instead of using up a delay topic or going to .DLT
+@Configuration
+public class KafkaRetryTopicConfiguration extends RetryTopicConfigurationSupport {
+
+    @Override
+    protected void configureBlockingRetries(BlockingRetriesConfigurer blockingRetries) {
+        blockingRetries
+                .retryOn(CircuitBreakerOpenException.class)
+                .backOff(new FixedBackOff(KafkaConsumerConfiguration.CIRCUIT_OPEN_BACK_OFF_MS,
+                        FixedBackOff.UNLIMITED_ATTEMPTS));
+    }
+}
@@ -0,0 +1,55 @@
+package com.v.emailnotification.controller;
+
+import java.util.List;
+
+import com.v.core.kafka.DeadLetterReplayProgress;
+import com.v.core.kafka.DeadLetterReplayRequest;
+import com.v.core.kafka.DeadLetterReplayer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Replays dead letters back to their topic, e.g.
+//   POST /dlt/replays {"topic":"product-created-events-topic.DLT","exceptionClass":"RetryableException",
+//                      "from":"2025-01-01T10:00:00Z","to":"2025-01-01T11:00:00Z","ratePerSecond":200}
+// answers 202 with the replay id, progress is at GET /dlt/replays/{id}, DELETE stops it.
+@RestController
+@RequestMapping("/dlt/replays")
+public class DeadLetterReplayController {
+
+    private final DeadLetterReplayer deadLetterReplayer;
+
+    public DeadLetterReplayController(DeadLetterReplayer deadLetterReplayer) {
+        this.deadLetterReplayer = deadLetterReplayer;
+    }
+
+    @PostMapping
+    public ResponseEntity<DeadLetterReplayProgress> replay(@RequestBody DeadLetterReplayRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(deadLetterReplayer.start(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping
+    public List<DeadLetterReplayProgress> replays() {
+        return deadLetterReplayer.progress();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<DeadLetterReplayProgress> replay(@PathVariable String id) {
+        return ResponseEntity.of(deadLetterReplayer.progress(id));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<DeadLetterReplayProgress> cancel(@PathVariable String id) {
+        return ResponseEntity.of(deadLetterReplayer.cancel(id));
+    }
+}
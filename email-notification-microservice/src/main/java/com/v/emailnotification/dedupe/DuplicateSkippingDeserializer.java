@@ -0,0 +1,81 @@
+package com.v.emailnotification.dedupe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/*
+ Value deserializer in front of the JSON / binary one: a record whose messageId header is among the recently
+ processed ids (see ProcessedMessageCache) is not parsed, its value becomes SkippedRecord.DUPLICATE and the
+ container's record filter drops it before any listener sees it (see KafkaConsumerConfiguration).
+
+ Only the recent ids are checked here, they are the ones redelivery storms repeat and a hit needs no query. Anything
+ else is parsed and goes through the listener's own dedupe as before.
+
+ Counters:
+   email.dedupe.skipped        records dropped before deserialization
+   email.dedupe.skipped.bytes  payload bytes that were not parsed
+*/
+public class DuplicateSkippingDeserializer implements Deserializer<Object> {
+
+    public enum SkippedRecord { DUPLICATE }
+
+    private static final String MESSAGE_ID_HEADER = "messageId";
+
+    private final Deserializer<?> delegate;
+    private final ProcessedMessageCache processedMessageCache;
+    private final Counter skipped;
+    private final Counter skippedBytes;
+
+    public DuplicateSkippingDeserializer(Deserializer<?> delegate, ProcessedMessageCache processedMessageCache,
+                                         MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.processedMessageCache = processedMessageCache;
+        this.skipped = Counter.builder("email.dedupe.skipped")
+                .description("Duplicate records dropped before their payload was deserialized")
+                .register(meterRegistry);
+        this.skippedBytes = Counter.builder("email.dedupe.skipped.bytes")
+                .description("Payload bytes of duplicate records that were not deserialized")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // for RecordFilterStrategy
+    public static boolean isSkipped(ConsumerRecord<?, ?> record) {
+        return record.value() == SkippedRecord.DUPLICATE;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return delegate.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        Header header = headers.lastHeader(MESSAGE_ID_HEADER);
+        if (header != null && processedMessageCache.isRecent(new String(header.value(), StandardCharsets.UTF_8))) {
+            skipped.increment();
+            if (data != null) {
+                skippedBytes.increment(data.length);
+            }
+            return SkippedRecord.DUPLICATE;
+        }
+        return delegate.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
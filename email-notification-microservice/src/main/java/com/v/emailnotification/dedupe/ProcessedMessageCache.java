@@ -0,0 +1,186 @@
+package com.v.emailnotification.dedupe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.v.emailnotification.repository.ProcessEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ Sits in front of ProcessEventRepository so that message ids never seen before don't cost a query.
+
+ 1. a bounded LRU of recently processed ids answers "duplicate" for redeliveries, which come soon after the original
+ 2. a Bloom filter per assigned partition answers "definitely new" for everything it has never seen
+ 3. only what the filter thinks it may have seen goes to the database
+
+ Record, concurrent and key-ordered modes only use 1, followed by insert-if-absent or an indexed exists check.
+ Batch mode notifies before it stores, so it uses all three to keep the IN query down to the uncertain ids.
+
+ In batch mode filters are rebuilt when partitions are assigned (see KafkaConsumerConfiguration) and dropped when
+ they are revoked. A rebuild reads only the newest rebuild-window ids of the partition: redeliveries are of records
+ whose offsets were not committed yet, so they are recent, and older ids are ruled out as new. Ids are added only
+ after the transaction storing them commits, a rolled back record must still look new when it is retried.
+
+ Counters, email.dedupe.checks tagged result:
+   recent          LRU hit, duplicate without a query
+   new             new id: ruled out by the filter (batch) or stored by insert-if-absent (record)
+   duplicate       the database had it
+   false-positive  batch: the filter said maybe, the database did not have it
+*/
+@Component
+public class ProcessedMessageCache {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final ProcessEventRepository eventRepository;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final int rebuildWindow;
+
+    private final Map<Integer, BloomFilter<CharSequence>> filters = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> recent;
+
+    private final Counter recentHits;
+    private final Counter definitelyNew;
+    private final Counter confirmedDuplicates;
+    private final Counter falsePositives;
+
+    public ProcessedMessageCache(ProcessEventRepository eventRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${email.dedupe.expected-insertions:100000}") long expectedInsertions,
+                                 @Value("${email.dedupe.false-positive-rate:0.01}") double falsePositiveRate,
+                                 @Value("${email.dedupe.recent-size:10000}") int recentSize,
+                                 @Value("${email.dedupe.rebuild-window:100000}") int rebuildWindow) {
+        this.eventRepository = eventRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildWindow = rebuildWindow;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentSize;
+            }
+        });
+
+        this.recentHits = checks(meterRegistry, "recent");
+        this.definitelyNew = checks(meterRegistry, "new");
+        this.confirmedDuplicates = checks(meterRegistry, "duplicate");
+        this.falsePositives = checks(meterRegistry, "false-positive");
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("email.dedupe.checks")
+                .description("Processed message id lookups by how they were answered")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // record mode: insert-if-absent is the database check, so only recent ids are worth answering before it
+    public boolean isRecent(String messageId) {
+        if (recent.get(messageId) != null) {
+            recentHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // record mode: outcome of the insert-if-absent, a new id is remembered once the transaction commits
+    public void inserted(int partition, String messageId, boolean isNew) {
+        if (isNew) {
+            definitelyNew.increment();
+            markProcessed(partition, messageId);
+        } else {
+            confirmedDuplicates.increment();
+        }
+    }
+
+    // batch mode: the ids the filters are unsure about are checked with one query before anything is notified
+    public Set<String> findProcessed(Map<String, Integer> partitionsByMessageId) {
+        Set<String> processed = new HashSet<>();
+        Set<String> uncertain = new HashSet<>();
+        partitionsByMessageId.forEach((messageId, partition) -> {
+            if (recent.get(messageId) != null) {
+                recentHits.increment();
+                processed.add(messageId);
+            } else if (mightContain(partition, messageId)) {
+                uncertain.add(messageId);
+            } else {
+                definitelyNew.increment();
+            }
+        });
+        if (!uncertain.isEmpty()) {
+            List<String> existing = eventRepository.findExistingMessageIds(uncertain);
+            confirmedDuplicates.increment(existing.size());
+            falsePositives.increment(uncertain.size() - existing.size());
+            processed.addAll(existing);
+        }
+        return processed;
+    }
+
+    public void markProcessed(int partition, String messageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(partition, messageId);
+                }
+            });
+        } else {
+            remember(partition, messageId);
+        }
+    }
+
+    public void assign(Collection<Integer> partitions) {
+        for (Integer partition : partitions) {
+            long start = System.nanoTime();
+            List<String> messageIds = eventRepository.findRecentMessageIdsByPartition(partition,
+                    PageRequest.of(0, rebuildWindow));
+            BloomFilter<CharSequence> filter = newFilter(messageIds.size());
+            messageIds.forEach(filter::put);
+            filters.put(partition, filter);
+            LOGGER.info("Rebuilt dedupe filter for partition {} from {} message ids in {} ms", partition,
+                    messageIds.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public void revoke(Collection<Integer> partitions) {
+        partitions.forEach(filters::remove);
+    }
+
+    private boolean mightContain(int partition, String messageId) {
+        BloomFilter<CharSequence> filter = filters.get(partition);
+        // not assigned through the rebalance listener (yet), nothing to rule out with
+        return filter == null || filter.mightContain(messageId);
+    }
+
+    private void remember(int partition, String messageId) {
+        recent.put(messageId, Boolean.TRUE);
+        BloomFilter<CharSequence> filter = filters.get(partition);
+        if (filter != null) {
+            filter.put(messageId);
+        }
+    }
+
+    // room for twice what is stored already, so a long lived assignment stays near the configured rate
+    private BloomFilter<CharSequence> newFilter(int stored) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(expectedInsertions, 2L * stored), falsePositiveRate);
+    }
+}
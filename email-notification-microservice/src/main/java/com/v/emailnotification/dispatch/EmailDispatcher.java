@@ -0,0 +1,255 @@
+package com.v.emailnotification.dispatch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.v.core.ProductCreatedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Sends the product created emails. Events are collected per recipient for email.dispatch.coalesce-window-ms, then
+// each recipient gets one email listing all of them, so a burst of events is one email per recipient, not one per
+// event.
+//
+// A batch is every message of one window. All of them go out back to back over one SMTP connection that stays open
+// between batches; it is checked once per batch and reopened when the server has closed it. A message that fails is
+// tried once more on a new connection, when that fails too the rest of the batch is given up. Sending is best effort:
+// the records are already committed, failed messages are only counted and logged.
+//
+// Meters: email.dispatch.batch (time to send one batch), email.dispatch.batch.size (messages per batch),
+// email.dispatch.messages{outcome=sent|failed} and email.dispatch.events{outcome=queued|dropped}.
+@Component
+public class EmailDispatcher {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final JavaMailSenderImpl mailSender;
+    private final EmailTemplate subjectTemplate;
+    private final EmailTemplate bodyTemplate;
+    private final EmailTemplate lineTemplate;
+    private final boolean enabled;
+    private final InternetAddress from;
+    private final List<String> recipients;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter queued;
+    private final Counter dropped;
+
+    // guarded by this
+    private Map<String, List<ProductCreatedEvent>> pending = new LinkedHashMap<>();
+    private int pendingEvents;
+
+    // only used by the dispatch thread
+    private Transport transport;
+
+    public EmailDispatcher(JavaMailSenderImpl mailSender, EmailTemplates templates, MeterRegistry meterRegistry,
+                           @Value("${email.dispatch.enabled:true}") boolean enabled,
+                           @Value("${email.dispatch.from:catalog@localhost}") String from,
+                           @Value("${email.dispatch.recipients:catalog-watchers@localhost}") List<String> recipients,
+                           @Value("${email.dispatch.coalesce-window-ms:500}") long coalesceWindowMs,
+                           @Value("${email.dispatch.max-pending:10000}") int maxPending) {
+        this.mailSender = mailSender;
+        this.subjectTemplate = templates.get("product-created-subject");
+        this.bodyTemplate = templates.get("product-created-body");
+        this.lineTemplate = templates.get("product-created-line");
+        this.enabled = enabled;
+        try {
+            this.from = new InternetAddress(from);
+        } catch (MessagingException e) {
+            throw new IllegalArgumentException("Invalid email.dispatch.from " + from, e);
+        }
+        this.recipients = List.copyOf(recipients);
+        this.maxPending = maxPending;
+        this.batchTimer = Timer.builder("email.dispatch.batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("email.dispatch.batch.size").register(meterRegistry);
+        this.sent = meterRegistry.counter("email.dispatch.messages", "outcome", "sent");
+        this.failed = meterRegistry.counter("email.dispatch.messages", "outcome", "failed");
+        this.queued = meterRegistry.counter("email.dispatch.events", "outcome", "queued");
+        this.dropped = meterRegistry.counter("email.dispatch.events", "outcome", "dropped");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, coalesceWindowMs, coalesceWindowMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // inside a transaction the event is queued once it commits, a rolled back record is redelivered anyway
+    public void enqueue(ProductCreatedEvent productCreatedEvent) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(productCreatedEvent);
+                }
+            });
+        } else {
+            add(productCreatedEvent);
+        }
+    }
+
+    private synchronized void add(ProductCreatedEvent productCreatedEvent) {
+        if (pendingEvents >= maxPending) {
+            dropped.increment();
+            LOGGER.warn("Email dispatch queue full, no email for product {}", productCreatedEvent.getProductId());
+            return;
+        }
+        for (String recipient : recipients) {
+            pending.computeIfAbsent(recipient, r -> new ArrayList<>()).add(productCreatedEvent);
+        }
+        pendingEvents++;
+        queued.increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Email dispatch failed", e);
+        }
+    }
+
+    // sends everything queued so far as one batch, runs on the dispatch thread
+    void flush() {
+        Map<String, List<ProductCreatedEvent>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            pendingEvents = 0;
+        }
+
+        long start = System.nanoTime();
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        batch.forEach((recipient, events) -> messages.add(render(recipient, events)));
+        int sentMessages = send(messages);
+        long elapsed = System.nanoTime() - start;
+
+        batchTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        batchSize.record(messages.size());
+        LOGGER.debug("Sent {} of {} emails in {} ms", sentMessages, messages.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private MimeMessage render(String recipient, List<ProductCreatedEvent> events) {
+        StringBuilder products = new StringBuilder(64 * events.size());
+        for (ProductCreatedEvent event : events) {
+            lineTemplate.renderTo(products, Map.of(
+                    "productId", event.getProductId(),
+                    "title", event.getTitle(),
+                    "price", event.getPrice(),
+                    "quantity", event.getQuantity()));
+        }
+        Map<String, Object> values = Map.of("count", events.size(), "products", products);
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            message.setFrom(from);
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipient));
+            message.setSubject(subjectTemplate.render(values), "UTF-8");
+            message.setText(bodyTemplate.render(values), "UTF-8");
+            message.saveChanges();
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException("Could not build the email to " + recipient, e);
+        }
+    }
+
+    private int send(List<MimeMessage> messages) {
+        int sentMessages = 0;
+        try {
+            Transport connection = connection(true);
+            for (MimeMessage message : messages) {
+                try {
+                    connection.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException e) {
+                    LOGGER.warn("Sending an email failed, retrying on a new connection: {}", e.getMessage());
+                    closeConnection();
+                    connection = connection(false);
+                    connection.sendMessage(message, message.getAllRecipients());
+                }
+                sentMessages++;
+                sent.increment();
+            }
+        } catch (MessagingException e) {
+            LOGGER.error("Could not send {} emails to {}:{}: {}", messages.size() - sentMessages,
+                    mailSender.getHost(), mailSender.getPort(), e.getMessage());
+            failed.increment(messages.size() - sentMessages);
+            closeConnection();
+        }
+        return sentMessages;
+    }
+
+    // isConnected() costs a NOOP round trip, so an open connection is only checked at the start of a batch
+    private Transport connection(boolean check) throws MessagingException {
+        if (transport != null && (!check || transport.isConnected())) {
+            return transport;
+        }
+        closeConnection();
+        // same default as JavaMailSenderImpl
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol()
+                : mailSender.getSession().getProperty("mail.transport.protocol");
+        Transport connection = mailSender.getSession().getTransport(protocol != null ? protocol : "smtp");
+        connection.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(),
+                mailSender.getPassword());
+        transport = connection;
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            LOGGER.debug("Closing the SMTP connection failed: {}", e.getMessage());
+        }
+        transport = null;
+    }
+
+    // what is still queued goes out before the connection is closed
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        if (enabled) {
+            flushQuietly();
+        }
+        closeConnection();
+    }
+}
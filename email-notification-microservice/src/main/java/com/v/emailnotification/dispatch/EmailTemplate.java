@@ -0,0 +1,63 @@
+package com.v.emailnotification.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// A template split once into literal text and {{name}} placeholders, so rendering is only appends.
+// Placeholders without a value render as empty text.
+public final class EmailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals has one more entry than names: literal, name, literal, ..., name, literal
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private EmailTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static EmailTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literals.add(source.substring(position));
+                break;
+            }
+            literals.add(source.substring(position, open));
+            names.add(source.substring(open + OPEN.length(), close).trim());
+            position = close + CLOSE.length();
+        }
+        return new EmailTemplate(literals.toArray(String[]::new), names.toArray(String[]::new));
+    }
+
+    public String render(Map<String, ?> values) {
+        StringBuilder text = new StringBuilder(literalLength + 16 * names.length);
+        renderTo(text, values);
+        return text.toString();
+    }
+
+    public void renderTo(StringBuilder text, Map<String, ?> values) {
+        for (int i = 0; i < names.length; i++) {
+            text.append(literals[i]);
+            Object value = values.get(names[i]);
+            if (value != null) {
+                text.append(value);
+            }
+        }
+        text.append(literals[names.length]);
+    }
+}
@@ -0,0 +1,41 @@
+package com.v.emailnotification.dispatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+// Every classpath:templates/email/<name>.txt compiled at startup and kept in memory, looked up by <name>.
+@Component
+public class EmailTemplates {
+
+    private static final String LOCATION = "classpath*:templates/email/*.txt";
+    private static final String SUFFIX = ".txt";
+
+    private final Map<String, EmailTemplate> templates = new HashMap<>();
+
+    public EmailTemplates() {
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+                String filename = resource.getFilename();
+                templates.put(filename.substring(0, filename.length() - SUFFIX.length()),
+                        EmailTemplate.compile(resource.getContentAsString(StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the email templates", e);
+        }
+    }
+
+    public EmailTemplate get(String name) {
+        EmailTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("No email template " + name);
+        }
+        return template;
+    }
+}
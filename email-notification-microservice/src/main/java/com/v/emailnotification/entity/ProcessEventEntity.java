@@ -12,14 +12,18 @@ import lombok.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "PROCESSED_EVENTS")
+// the rebuild of a partition's dedupe filter reads its newest ids through this index
+@Table(name = "PROCESSED_EVENTS",
+        indexes = @Index(name = "IDX_PROCESSED_EVENTS_PARTITION", columnList = "partitionId, id"))
 public class ProcessEventEntity {
 
 
     private static final Long serialVersionUID=1L;
 
+    // pooled sequence: one round trip hands out 50 ids and inserts can be batched, IDENTITY allows neither
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "processed_events_seq")
+    @SequenceGenerator(name = "processed_events_seq", sequenceName = "PROCESSED_EVENTS_SEQ", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false,unique = true)
@@ -31,5 +35,9 @@ public class ProcessEventEntity {
     @Column
     private String productTitle;
 
+    // lets a consumer rebuild the dedupe filter of just the partitions it is assigned
+    @Column
+    private Integer partitionId;
+
 
 }
@@ -0,0 +1,131 @@
+package com.v.emailnotification.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.emailnotification.client.NotificationClient;
+import com.v.emailnotification.dedupe.ProcessedMessageCache;
+import com.v.emailnotification.entity.ProcessEventEntity;
+import com.v.emailnotification.error.NotRetryableException;
+import com.v.emailnotification.repository.ProcessEventBatchWriter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+// email.listener.mode=batch: a whole poll per call. Message ids the dedupe filter can't rule out are checked with one IN query and the new ones
+// stored with one JDBC batch, instead of a query, an insert and a transaction per record.
+//
+// Records are notified in order. When one fails, the ones before it are stored and a BatchListenerFailedException
+// carrying the record hands it to the DefaultErrorHandler: offsets before it are committed, it is retried or sent
+// to the DLT like in record mode, and the rest of the poll is redelivered.
+@Component
+@ConditionalOnProperty(name = "email.listener.mode", havingValue = "batch")
+public class ProductCreatedEventBatchHandler {
+
+    private static final String MESSAGE_ID_HEADER = "messageId";
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final LogAccessor logAccessor = new LogAccessor(this.getClass());
+
+    private final NotificationClient notificationClient;
+    private final ProcessedMessageCache processedMessageCache;
+    private final ProcessEventBatchWriter processEventBatchWriter;
+
+    public ProductCreatedEventBatchHandler(NotificationClient notificationClient,
+                                           ProcessedMessageCache processedMessageCache,
+                                           ProcessEventBatchWriter processEventBatchWriter) {
+        this.notificationClient = notificationClient;
+        this.processedMessageCache = processedMessageCache;
+        this.processEventBatchWriter = processEventBatchWriter;
+    }
+
+    @KafkaListener(
+            topics = "product-created-events-topic",
+            groupId = "product-created-events"
+    )
+    public void handle(List<ConsumerRecord<String, Object>> records) {
+        LOGGER.info("Received {} events", records.size());
+
+        Map<String, Integer> partitionsByMessageId = new LinkedHashMap<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            String messageId = messageId(record);
+            if (messageId != null) {
+                partitionsByMessageId.put(messageId, record.partition());
+            }
+        }
+        // also catches a message id repeated inside the poll, once it is added below
+        Set<String> processed = processedMessageCache.findProcessed(partitionsByMessageId);
+
+        List<ProcessEventEntity> notified = new ArrayList<>(records.size());
+        int index = 0;
+        try {
+            for (; index < records.size(); index++) {
+                ConsumerRecord<String, Object> record = records.get(index);
+                ProductCreatedEvent productCreatedEvent = productCreatedEvent(record);
+                String messageId = messageId(record);
+                if (messageId == null) {
+                    throw new NotRetryableException("Missing " + MESSAGE_ID_HEADER + " header");
+                }
+
+                if (!processed.add(messageId)) {
+                    LOGGER.info("Duplicate message detected and skipped: {}", messageId);
+                    continue;
+                }
+
+                notificationClient.productCreated(productCreatedEvent);
+                notified.add(ProcessEventEntity.builder()
+                        .productId(productCreatedEvent.getProductId())
+                        .messageId(messageId)
+                        .productTitle(productCreatedEvent.getTitle())
+                        .partitionId(record.partition())
+                        .build());
+            }
+        } catch (RuntimeException e) {
+            store(notified);
+            // by record, not index: duplicates skipped before deserialization are not in the list
+            throw new BatchListenerFailedException("Failed to process event " + index + " of the batch", e,
+                    records.get(index));
+        }
+
+        store(notified);
+    }
+
+    private void store(List<ProcessEventEntity> notified) {
+        processEventBatchWriter.insertAll(notified);
+        for (ProcessEventEntity processEvent : notified) {
+            processedMessageCache.markProcessed(processEvent.getPartitionId(), processEvent.getMessageId());
+        }
+    }
+
+    private ProductCreatedEvent productCreatedEvent(ConsumerRecord<String, Object> record) {
+        // ErrorHandlingDeserializer leaves a null value and the failure in a header, rethrowing it keeps the
+        // original bytes for the dead letter record
+        DeserializationException deserializationException = SerializationUtils.getExceptionFromHeader(record,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, logAccessor);
+        if (deserializationException != null) {
+            throw deserializationException;
+        }
+        if (!(record.value() instanceof ProductCreatedEvent productCreatedEvent)) {
+            throw new NotRetryableException("Unexpected payload " + record.value());
+        }
+        return productCreatedEvent;
+    }
+
+    private static String messageId(ConsumerRecord<String, Object> record) {
+        Header header = record.headers().lastHeader(MESSAGE_ID_HEADER);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+package com.v.emailnotification.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.resilience.CircuitBreakerOpenException;
+import com.v.emailnotification.client.NotificationClient;
+import com.v.emailnotification.dedupe.ProcessedMessageCache;
+import com.v.emailnotification.error.NotRetryableException;
+import com.v.emailnotification.error.RetryableException;
+import com.v.emailnotification.repository.ProcessEventRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+// email.listener.mode=concurrent: the listener thread only dedupes and starts the remote call, so the records of a
+// poll are notified concurrently and throughput follows downstream latency and max-in-flight, not partition count.
+//
+// A record is acked once it is stored, or once it is on the DLT; the container commits each partition up to the
+// highest contiguous acked offset, so a crash redelivers everything not finished - at least once, as before.
+// Retries happen here instead of in the DefaultErrorHandler, with the same back off. Calls rejected by an open
+// circuit breaker are retried without counting against MAX_RETRIES, the container is paused until it half opens.
+@Component
+@ConditionalOnProperty(name = "email.listener.mode", havingValue = "concurrent")
+public class ProductCreatedEventConcurrentHandler {
+
+    private static final String MESSAGE_ID_HEADER = "messageId";
+
+    // same as the FixedBackOff of the container error handler
+    private static final long BACK_OFF_MS = 5000;
+    private static final int MAX_RETRIES = 3;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final NotificationClient notificationClient;
+    private final ProcessEventRepository eventRepository;
+    private final ProcessedMessageCache processedMessageCache;
+    private final DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+    private final Semaphore inFlight;
+    private final Executor retryExecutor = CompletableFuture.delayedExecutor(BACK_OFF_MS, TimeUnit.MILLISECONDS);
+
+    public ProductCreatedEventConcurrentHandler(NotificationClient notificationClient,
+                                                ProcessEventRepository eventRepository,
+                                                ProcessedMessageCache processedMessageCache,
+                                                DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                                @Value("${email.concurrent.max-in-flight:64}") int maxInFlight) {
+        this.notificationClient = notificationClient;
+        this.eventRepository = eventRepository;
+        this.processedMessageCache = processedMessageCache;
+        this.deadLetterPublishingRecoverer = deadLetterPublishingRecoverer;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @KafkaListener(
+            topics = "product-created-events-topic",
+            groupId = "product-created-events"
+    )
+    public void handle(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) throws InterruptedException {
+        if (!(record.value() instanceof ProductCreatedEvent productCreatedEvent)) {
+            throw new NotRetryableException("Unexpected payload " + record.value());
+        }
+        Header header = record.headers().lastHeader(MESSAGE_ID_HEADER);
+        if (header == null) {
+            throw new NotRetryableException("Missing " + MESSAGE_ID_HEADER + " header");
+        }
+        String messageId = new String(header.value(), StandardCharsets.UTF_8);
+        int partition = record.partition();
+
+        LOGGER.info("Received a new event: " + productCreatedEvent);
+
+        // the dedupe filters are only kept in batch mode, a recent id or the database answers here
+        if (processedMessageCache.isRecent(messageId) || eventRepository.existsByMessageId(messageId)) {
+            LOGGER.info("Duplicate message detected and skipped: {}", messageId);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        // back pressure on the listener thread once max-in-flight calls are outstanding
+        inFlight.acquire();
+        notifyWithRetry(productCreatedEvent, 0)
+                .thenRun(() -> store(productCreatedEvent, messageId, partition))
+                .whenComplete((ignored, ex) -> {
+                    inFlight.release();
+                    if (ex != null && !deadLetter(record, unwrap(ex))) {
+                        // not acked: the partition's commits stop here and the record is redelivered after a
+                        // restart or rebalance
+                        return;
+                    }
+                    acknowledgment.acknowledge();
+                });
+    }
+
+    private CompletableFuture<Void> notifyWithRetry(ProductCreatedEvent productCreatedEvent, int retries) {
+        return notificationClient.productCreatedAsync(productCreatedEvent).exceptionallyCompose(ex -> {
+            Throwable cause = unwrap(ex);
+            if (cause instanceof CircuitBreakerOpenException) {
+                return CompletableFuture.runAsync(() -> { }, retryExecutor)
+                        .thenCompose(ignored -> notifyWithRetry(productCreatedEvent, retries));
+            }
+            if (cause instanceof RetryableException && retries < MAX_RETRIES) {
+                return CompletableFuture.runAsync(() -> { }, retryExecutor)
+                        .thenCompose(ignored -> notifyWithRetry(productCreatedEvent, retries + 1));
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private void store(ProductCreatedEvent productCreatedEvent, String messageId, int partition) {
+        boolean isNew = eventRepository.insertIfAbsent(messageId, productCreatedEvent.getProductId(),
+                productCreatedEvent.getTitle(), partition) == 1;
+        processedMessageCache.inserted(partition, messageId, isNew);
+    }
+
+    private boolean deadLetter(ConsumerRecord<String, Object> record, Throwable cause) {
+        try {
+            deadLetterPublishingRecoverer.accept(record,
+                    cause instanceof Exception exception ? exception : new NotRetryableException(cause));
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not publish {}-{}@{} to the DLT", record.topic(), record.partition(),
+                    record.offset(), e);
+            return false;
+        }
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+}
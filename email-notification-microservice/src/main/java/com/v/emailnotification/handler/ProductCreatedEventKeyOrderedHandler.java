@@ -0,0 +1,170 @@
+package com.v.emailnotification.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.resilience.CircuitBreakerOpenException;
+import com.v.emailnotification.client.NotificationClient;
+import com.v.emailnotification.dedupe.ProcessedMessageCache;
+import com.v.emailnotification.error.NotRetryableException;
+import com.v.emailnotification.error.RetryableException;
+import com.v.emailnotification.repository.ProcessEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+// email.listener.mode=key-ordered: the listener thread dedupes and hands each record to one of email.key-ordered.workers
+// single threaded workers, picked by the record key. Records with the same key run one after the other in offset
+// order, records with different keys run in parallel, so one partition keeps many cores busy.
+//
+// Offsets work as in the concurrent mode: a record is acked once it is stored or on the DLT, and the container
+// commits each partition only up to the highest contiguous acked offset. Retries happen on the worker with the same
+// back off as the container error handler, and hold up only the keys of that worker.
+@Component
+@ConditionalOnProperty(name = "email.listener.mode", havingValue = "key-ordered")
+public class ProductCreatedEventKeyOrderedHandler {
+
+    private static final String MESSAGE_ID_HEADER = "messageId";
+
+    // same as the FixedBackOff of the container error handler
+    private static final long BACK_OFF_MS = 5000;
+    private static final int MAX_RETRIES = 3;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final NotificationClient notificationClient;
+    private final ProcessEventRepository eventRepository;
+    private final ProcessedMessageCache processedMessageCache;
+    private final DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+    private final ExecutorService[] workers;
+    private final Semaphore inFlight;
+
+    public ProductCreatedEventKeyOrderedHandler(NotificationClient notificationClient,
+                                                ProcessEventRepository eventRepository,
+                                                ProcessedMessageCache processedMessageCache,
+                                                DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                                @Value("${email.key-ordered.workers:16}") int workers,
+                                                @Value("${email.key-ordered.max-in-flight:256}") int maxInFlight) {
+        this.notificationClient = notificationClient;
+        this.eventRepository = eventRepository;
+        this.processedMessageCache = processedMessageCache;
+        this.deadLetterPublishingRecoverer = deadLetterPublishingRecoverer;
+        this.workers = new ExecutorService[workers];
+        AtomicInteger threadNumber = new AtomicInteger();
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = Executors.newSingleThreadExecutor(runnable ->
+                    new Thread(runnable, "key-ordered-" + threadNumber.getAndIncrement()));
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @KafkaListener(
+            topics = "product-created-events-topic",
+            groupId = "product-created-events"
+    )
+    public void handle(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) throws InterruptedException {
+        if (!(record.value() instanceof ProductCreatedEvent productCreatedEvent)) {
+            throw new NotRetryableException("Unexpected payload " + record.value());
+        }
+        Header header = record.headers().lastHeader(MESSAGE_ID_HEADER);
+        if (header == null) {
+            throw new NotRetryableException("Missing " + MESSAGE_ID_HEADER + " header");
+        }
+        String messageId = new String(header.value(), StandardCharsets.UTF_8);
+        int partition = record.partition();
+
+        LOGGER.info("Received a new event: " + productCreatedEvent);
+
+        // the dedupe filters are only kept in batch mode, a recent id or the database answers here
+        if (processedMessageCache.isRecent(messageId) || eventRepository.existsByMessageId(messageId)) {
+            LOGGER.info("Duplicate message detected and skipped: {}", messageId);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        // back pressure on the listener thread once max-in-flight records are queued or running
+        inFlight.acquire();
+        workerFor(record).execute(() -> {
+            try {
+                process(record, productCreatedEvent, messageId, partition, acknowledgment);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // records without a key are spread by offset, they have no order to keep
+    private ExecutorService workerFor(ConsumerRecord<String, Object> record) {
+        int hash = record.key() != null ? record.key().hashCode() : Long.hashCode(record.offset());
+        return workers[Math.floorMod(hash, workers.length)];
+    }
+
+    private void process(ConsumerRecord<String, Object> record, ProductCreatedEvent productCreatedEvent,
+                         String messageId, int partition, Acknowledgment acknowledgment) {
+        try {
+            notifyWithRetry(productCreatedEvent);
+            boolean isNew = eventRepository.insertIfAbsent(messageId, productCreatedEvent.getProductId(),
+                    productCreatedEvent.getTitle(), partition) == 1;
+            processedMessageCache.inserted(partition, messageId, isNew);
+        } catch (InterruptedException e) {
+            // shutting down: not acked, redelivered after the restart
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            if (!deadLetter(record, e)) {
+                // not acked: the partition's commits stop here and the record is redelivered after a
+                // restart or rebalance
+                return;
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    // calls rejected by an open circuit breaker are retried without counting against MAX_RETRIES
+    private void notifyWithRetry(ProductCreatedEvent productCreatedEvent) throws InterruptedException {
+        int retries = 0;
+        while (true) {
+            try {
+                notificationClient.productCreated(productCreatedEvent);
+                return;
+            } catch (CircuitBreakerOpenException e) {
+                Thread.sleep(BACK_OFF_MS);
+            } catch (RetryableException e) {
+                if (retries++ == MAX_RETRIES) {
+                    throw e;
+                }
+                Thread.sleep(BACK_OFF_MS);
+            }
+        }
+    }
+
+    private boolean deadLetter(ConsumerRecord<String, Object> record, Exception cause) {
+        try {
+            deadLetterPublishingRecoverer.accept(record, cause);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not publish {}-{}@{} to the DLT", record.topic(), record.partition(),
+                    record.offset(), e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+}
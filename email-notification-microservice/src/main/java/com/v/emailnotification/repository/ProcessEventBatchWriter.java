@@ -0,0 +1,57 @@
+package com.v.emailnotification.repository;
+
+import java.util.List;
+
+import com.v.emailnotification.entity.ProcessEventEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Inserts processed events as one JDBC batch in one transaction, instead of a save() and a commit per event.
+// Each row is the repository's insert-if-absent statement, so an id stored since the dedupe query is skipped
+// instead of failing the batch.
+@Component
+public class ProcessEventBatchWriter {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProcessEventBatchWriter(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // returns how many of the events were new
+    public int insertAll(List<ProcessEventEntity> processEvents) {
+        if (processEvents.isEmpty()) {
+            return 0;
+        }
+        SqlParameterSource[] rows = processEvents.stream()
+                .map(processEvent -> new MapSqlParameterSource()
+                        .addValue("messageId", processEvent.getMessageId())
+                        .addValue("productId", processEvent.getProductId())
+                        .addValue("productTitle", processEvent.getProductTitle())
+                        .addValue("partitionId", processEvent.getPartitionId()))
+                .toArray(SqlParameterSource[]::new);
+
+        int[] counts = transactionTemplate.execute(status ->
+                jdbcTemplate.batchUpdate(ProcessEventRepository.INSERT_IF_ABSENT, rows));
+
+        int inserted = 0;
+        for (int count : counts) {
+            // drivers may only report SUCCESS_NO_INFO (-2) for batched statements
+            inserted += count == 0 ? 0 : 1;
+        }
+        if (inserted < processEvents.size()) {
+            LOGGER.info("{} of {} messages were already stored and skipped", processEvents.size() - inserted,
+                    processEvents.size());
+        }
+        return inserted;
+    }
+}
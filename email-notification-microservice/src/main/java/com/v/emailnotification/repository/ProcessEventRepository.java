@@ -1,12 +1,40 @@
 package com.v.emailnotification.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.v.emailnotification.entity.ProcessEventEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface ProcessEventRepository extends JpaRepository<ProcessEventEntity,Long> {
 
+    // Dedupe and store in one round trip: 1 when the message id was new, 0 when it was processed before.
+    // Written for H2 (next value for); on PostgreSQL this would be nextval(...) and could use ON CONFLICT DO NOTHING.
+    String INSERT_IF_ABSENT = "insert into PROCESSED_EVENTS (id, message_id, product_id, product_title, partition_id) "
+            + "select next value for PROCESSED_EVENTS_SEQ, :messageId, :productId, :productTitle, :partitionId "
+            + "where not exists (select 1 from PROCESSED_EVENTS where message_id = :messageId)";
+
+    @Modifying
+    @Transactional
+    @Query(value = INSERT_IF_ABSENT, nativeQuery = true)
+    int insertIfAbsent(@Param("messageId") String messageId, @Param("productId") String productId,
+                       @Param("productTitle") String productTitle, @Param("partitionId") Integer partitionId);
+
     // Optimised exist check
     boolean existsByMessageId(String messageId);
+
+    // dedupe check for a whole poll in one query
+    @Query("select p.messageId from ProcessEventEntity p where p.messageId in :messageIds")
+    List<String> findExistingMessageIds(@Param("messageIds") Collection<String> messageIds);
+
+    // newest first (ids come from a sequence), the page bounds a dedupe filter rebuild
+    @Query("select p.messageId from ProcessEventEntity p where p.partitionId = :partitionId order by p.id desc")
+    List<String> findRecentMessageIdsByPartition(@Param("partitionId") int partitionId, Pageable pageable);
 }
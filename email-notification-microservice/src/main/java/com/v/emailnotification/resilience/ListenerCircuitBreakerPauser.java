@@ -0,0 +1,35 @@
+package com.v.emailnotification.resilience;
+
+import com.v.core.resilience.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+// Stops polling while the notification service is down instead of failing every record against it.
+// OPEN pauses every listener container (main topic and retry topics), the consumers stay in the group and keep
+// their partitions. The breaker moves to HALF_OPEN by itself after its open duration, that resumes the containers and
+// the next record is the probe: success closes the breaker, failure opens it and pauses them again.
+// Records already in flight when it opens fail with CircuitBreakerOpenException and are retried in place.
+@Component
+public class ListenerCircuitBreakerPauser {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final KafkaListenerEndpointRegistry registry;
+
+    public ListenerCircuitBreakerPauser(CircuitBreaker circuitBreaker, KafkaListenerEndpointRegistry registry) {
+        this.registry = registry;
+        circuitBreaker.addStateListener(this::onStateChange);
+    }
+
+    private void onStateChange(CircuitBreaker.State state) {
+        if (state == CircuitBreaker.State.OPEN) {
+            LOGGER.warn("Notification service circuit breaker open, pausing listener containers");
+            registry.getListenerContainers().forEach(MessageListenerContainer::pause);
+        } else {
+            LOGGER.info("Notification service circuit breaker {}, resuming listener containers", state);
+            registry.getListenerContainers().forEach(MessageListenerContainer::resume);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.v.emailnotification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.DeadLetterReplayProgress;
+import com.v.core.kafka.DeadLetterReplayer;
+import com.v.emailnotification.repository.ProcessEventRepository;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+@EmbeddedKafka(partitions=1, count=1, controlledShutdown=true)
+@TestPropertySource(properties = {
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "kafka.retry.topic-partitions=1"
+})
+public class DeadLetterReplayIntegrationTest {
+
+    private static final String DLT = "product-created-events-topic.DLT";
+
+    @MockBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    ProcessEventRepository processEventRepository;
+
+    @Autowired
+    KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+    }
+
+    @Test
+    public void testReplay_whenFilteredByException_republishesMatchingDeadLettersToTheirTopic() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("{\"key\":\"value\"}"));
+        String unreachableMessageId = UUID.randomUUID().toString();
+        String rejectedMessageId = UUID.randomUUID().toString();
+        kafkaTemplate.send(deadLetter(unreachableMessageId, "com.v.emailnotification.error.RetryableException"));
+        kafkaTemplate.send(deadLetter(rejectedMessageId, "com.v.emailnotification.error.NotRetryableException")).get();
+
+        // Act
+        String response = mockMvc.perform(post("/dlt/replays")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"topic\":\"" + DLT + "\",\"exceptionClass\":\"RetryableException\","
+                                + "\"ratePerSecond\":100}"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        String replayId = objectMapper.readValue(response, DeadLetterReplayProgress.class).id();
+
+        // Assert
+        DeadLetterReplayProgress progress = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            progress = objectMapper.readValue(mockMvc.perform(get("/dlt/replays/" + replayId))
+                    .andReturn().getResponse().getContentAsString(), DeadLetterReplayProgress.class);
+            if (progress.state() != DeadLetterReplayer.State.RUNNING) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(DeadLetterReplayer.State.COMPLETED, progress.state());
+        assertEquals(2, progress.scanned());
+        assertEquals(1, progress.replayed());
+        assertEquals(1, progress.filtered());
+
+        List<String> stored = List.of();
+        while (stored.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            stored = processEventRepository.findExistingMessageIds(List.of(unreachableMessageId, rejectedMessageId));
+        }
+        assertEquals(List.of(unreachableMessageId), stored);
+    }
+
+    // what DeadLetterPublishingRecoverer writes for a record that failed on product-created-events-topic
+    private static ProducerRecord<String, Object> deadLetter(String messageId, String exceptionClass) {
+        ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent(UUID.randomUUID().toString(),
+                "Test product", new BigDecimal(10), 1);
+        ProducerRecord<String, Object> record = new ProducerRecord<>(DLT, productCreatedEvent.getProductId(),
+                productCreatedEvent);
+        record.headers().add("messageId", messageId.getBytes());
+        record.headers().add("kafka_dlt-original-topic", "product-created-events-topic".getBytes());
+        record.headers().add("kafka_dlt-exception-fqcn",
+                "org.springframework.kafka.listener.ListenerExecutionFailedException".getBytes());
+        record.headers().add("kafka_dlt-exception-cause-fqcn", exceptionClass.getBytes());
+        return record;
+    }
+}
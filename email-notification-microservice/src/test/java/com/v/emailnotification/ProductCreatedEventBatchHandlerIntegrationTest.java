@@ -0,0 +1,113 @@
+package com.v.emailnotification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.RestTemplate;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.emailnotification.entity.ProcessEventEntity;
+import com.v.emailnotification.repository.ProcessEventRepository;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@EmbeddedKafka(partitions=1, count=1, controlledShutdown=true)
+@TestPropertySource(properties = {
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "email.listener.mode=batch"
+})
+public class ProductCreatedEventBatchHandlerIntegrationTest {
+
+    @MockBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    ProcessEventRepository processEventRepository;
+
+    @Autowired
+    KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+    }
+
+    @Test
+    public void testBatchHandler_whenPollHasDuplicateMessageId_notifiesAndStoresItOnce() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("{\"key\":\"value\"}"));
+
+        String firstMessageId = UUID.randomUUID().toString();
+        String secondMessageId = UUID.randomUUID().toString();
+
+        // Act
+        kafkaTemplate.send(record(firstMessageId));
+        kafkaTemplate.send(record(secondMessageId));
+        kafkaTemplate.send(record(firstMessageId)).get();
+
+        // Assert
+        verify(restTemplate, timeout(10000).times(2))
+                .exchange(eq("http://localhost:8082/response/200"), eq(HttpMethod.GET), isNull(), eq(String.class));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        List<ProcessEventEntity> stored = processEventRepository.findAll();
+        while (stored.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            stored = processEventRepository.findAll();
+        }
+        assertEquals(2, stored.size());
+        assertEquals(2, processEventRepository
+                .findExistingMessageIds(List.of(firstMessageId, secondMessageId)).size());
+
+        // a redelivered message is caught by the IN query, not by the in-poll set
+        kafkaTemplate.send(record(secondMessageId)).get();
+        Thread.sleep(2000);
+        verify(restTemplate, timeout(10000).times(2))
+                .exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class));
+        assertEquals(2, processEventRepository.count());
+    }
+
+    private static ProducerRecord<String, Object> record(String messageId) {
+        ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent(UUID.randomUUID().toString(),
+                "Test product", new BigDecimal(10), 1);
+        ProducerRecord<String, Object> record = new ProducerRecord<>("product-created-events-topic",
+                productCreatedEvent.getProductId(), productCreatedEvent);
+        record.headers().add("messageId", messageId.getBytes());
+        return record;
+    }
+}
@@ -0,0 +1,142 @@
+package com.v.emailnotification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import com.sun.net.httpserver.HttpServer;
+import com.v.core.ProductCreatedEvent;
+import com.v.emailnotification.repository.ProcessEventRepository;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@EmbeddedKafka(partitions=1, count=1, controlledShutdown=true)
+@TestPropertySource(properties = {
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "email.listener.mode=concurrent"
+})
+public class ProductCreatedEventConcurrentHandlerIntegrationTest {
+
+    private static final int RECORDS = 10;
+    private static final long RESPONSE_DELAY_MS = 300;
+
+    private static HttpServer server;
+    private static final AtomicInteger active = new AtomicInteger();
+    private static final AtomicInteger maxActive = new AtomicInteger();
+
+    // a slow remote service that remembers how many calls it had at once
+    @DynamicPropertySource
+    static void notificationService(DynamicPropertyRegistry registry) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/response/200", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(RESPONSE_DELAY_MS);
+                byte[] body = "200".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        registry.add("email.notification.url",
+                () -> "http://localhost:" + server.getAddress().getPort() + "/response/200");
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Autowired
+    ProcessEventRepository processEventRepository;
+
+    @Autowired
+    KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+    }
+
+    @Test
+    public void testConcurrentHandler_notifiesPollConcurrentlyAndCommitsEveryRecord() throws Exception {
+
+        // Arrange
+        List<String> messageIds = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            messageIds.add(UUID.randomUUID().toString());
+        }
+
+        // Act
+        for (String messageId : messageIds) {
+            ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent(UUID.randomUUID().toString(),
+                    "Test product", new BigDecimal(10), 1);
+            ProducerRecord<String, Object> record = new ProducerRecord<>("product-created-events-topic",
+                    productCreatedEvent.getProductId(), productCreatedEvent);
+            record.headers().add("messageId", messageId.getBytes());
+            kafkaTemplate.send(record);
+        }
+        kafkaTemplate.flush();
+
+        // Assert
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        OffsetAndMetadata committed = null;
+        while (System.nanoTime() < deadline) {
+            committed = KafkaTestUtils.getCurrentOffset(embeddedKafkaBroker.getBrokersAsString(),
+                    "product-created-events", "product-created-events-topic", 0);
+            if (committed != null && committed.offset() == RECORDS) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+
+        assertEquals(RECORDS, committed == null ? 0 : committed.offset());
+        assertEquals(RECORDS, processEventRepository.findExistingMessageIds(messageIds).size());
+        assertTrue(maxActive.get() > 1, "remote calls should overlap, max at once was " + maxActive.get());
+    }
+}
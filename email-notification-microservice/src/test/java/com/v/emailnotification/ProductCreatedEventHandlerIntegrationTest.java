@@ -47,7 +47,8 @@ import com.v.emailnotification.repository.ProcessEventRepository;
 @EmbeddedKafka(partitions=1, count=1, controlledShutdown=true)
 @TestPropertySource(properties = {
         "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
-        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}"
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kafka.retry.topic-partitions=1"
 })
 public class ProductCreatedEventHandlerIntegrationTest {
 
@@ -122,7 +123,8 @@ public class ProductCreatedEventHandlerIntegrationTest {
 
         verify(productCreatedEventHandler, timeout(5000).times(1)).handle(eventCaptor.capture(),
                 messageIdCaptor.capture(),
-                messageKeyCaptor.capture());
+                messageKeyCaptor.capture(),
+                eq(0));
 
         assertEquals(messageId, messageIdCaptor.getValue());
         assertEquals(messageKey, messageKeyCaptor.getValue());
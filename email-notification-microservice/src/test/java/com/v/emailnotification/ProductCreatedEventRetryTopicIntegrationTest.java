@@ -0,0 +1,108 @@
+package com.v.emailnotification;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.v.core.ProductCreatedEvent;
+import com.v.emailnotification.repository.ProcessEventRepository;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@EmbeddedKafka(partitions=1, count=1, controlledShutdown=true)
+@TestPropertySource(properties = {
+        "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "kafka.retry.topic-partitions=1",
+        "kafka.retry.initial-interval-ms=5000"
+})
+public class ProductCreatedEventRetryTopicIntegrationTest {
+
+    @MockBean
+    ProcessEventRepository processedEventRepository;
+
+    @MockBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        for (MessageListenerContainer container : kafkaListenerEndpointRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+    }
+
+    @Test
+    public void testRetryableFailure_isRetriedFromDelayTopicWithoutStallingThePartition() throws Exception {
+
+        // Arrange
+        when(processedEventRepository.insertIfAbsent(anyString(), anyString(), anyString(), anyInt())).thenReturn(1);
+        // first call (the failing record) can't reach the service, every later call succeeds
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenReturn(ResponseEntity.ok("{\"key\":\"value\"}"));
+
+        String failingMessageId = UUID.randomUUID().toString();
+        String healthyMessageId = UUID.randomUUID().toString();
+
+        // Act
+        kafkaTemplate.send(record(failingMessageId)).get();
+        kafkaTemplate.send(record(healthyMessageId)).get();
+
+        // Assert
+        // the next record is handled while the failed one waits out its 5s back off on the retry topic,
+        // FixedBackOff(5000, 3) would have held it back
+        verify(processedEventRepository, timeout(4000).times(1))
+                .insertIfAbsent(eq(healthyMessageId), anyString(), anyString(), anyInt());
+        // the row is inserted before the call is made, wait for the call too
+        verify(restTemplate, timeout(1000).times(2))
+                .exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class));
+
+        // then the failed record succeeds on its retry
+        verify(processedEventRepository, timeout(15000).times(2))
+                .insertIfAbsent(eq(failingMessageId), anyString(), anyString(), anyInt());
+        verify(restTemplate, timeout(15000).times(3))
+                .exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class));
+    }
+
+    private static ProducerRecord<String, Object> record(String messageId) {
+        ProductCreatedEvent productCreatedEvent = new ProductCreatedEvent(UUID.randomUUID().toString(),
+                "Test product", new BigDecimal(10), 1);
+        ProducerRecord<String, Object> record = new ProducerRecord<>("product-created-events-topic",
+                productCreatedEvent.getProductId(), productCreatedEvent);
+        record.headers().add("messageId", messageId.getBytes());
+        return record;
+    }
+}
@@ -1,10 +1,11 @@
 package com.v.emailnotification;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -16,7 +17,6 @@ import java.util.UUID;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -48,7 +48,8 @@ import com.v.emailnotification.repository.ProcessEventRepository;
 @TestPropertySource(properties = {
         "spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
         "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
-        "spring.kafka.consumer.auto-offset-reset=earliest"
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "kafka.retry.topic-partitions=1"
 })
 public class TestWithoutSpyBean {
 
@@ -95,9 +96,7 @@ public class TestWithoutSpyBean {
 
         record.headers().add("messageId", messageId.getBytes());
 
-        when(processedEventRepository.existsByMessageId(anyString())).thenReturn(false);
-        when(processedEventRepository.save(any(ProcessEventEntity.class)))
-                .thenReturn(new ProcessEventEntity());
+        when(processedEventRepository.insertIfAbsent(anyString(), anyString(), anyString(), anyInt())).thenReturn(1);
 
         String responseBody = "{\"key\":\"value\"}";
         ResponseEntity<String> responseEntity = new ResponseEntity<>(responseBody, new HttpHeaders(), HttpStatus.OK);
@@ -115,18 +114,13 @@ public class TestWithoutSpyBean {
         // Assert - Verify the BEHAVIOR (what the handler does)
         // This proves the handler was called and executed successfully
 
+        // Verify the stored row has correct data
         verify(processedEventRepository, timeout(10000).times(1))
-                .existsByMessageId(messageId);
+                .insertIfAbsent(messageId, productCreatedEvent.getProductId(), productCreatedEvent.getTitle(), 0);
 
-        ArgumentCaptor<ProcessEventEntity> entityCaptor = ArgumentCaptor.forClass(ProcessEventEntity.class);
-        verify(processedEventRepository, timeout(10000).times(1))
-                .save(entityCaptor.capture());
-
-        // Verify the saved entity has correct data
-        ProcessEventEntity savedEntity = entityCaptor.getValue();
-        assertEquals(messageId, savedEntity.getMessageId());
-        assertEquals(productCreatedEvent.getProductId(), savedEntity.getProductId());
-        assertEquals(productCreatedEvent.getTitle(), savedEntity.getProductTitle());
+        // checked and stored by the one insert-if-absent statement, no separate exists query or save
+        verify(processedEventRepository, never()).existsByMessageId(anyString());
+        verify(processedEventRepository, never()).save(any(ProcessEventEntity.class));
 
         verify(restTemplate, timeout(10000).times(1))
                 .exchange(
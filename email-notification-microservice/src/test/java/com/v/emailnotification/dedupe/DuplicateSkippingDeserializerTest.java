@@ -0,0 +1,77 @@
+package com.v.emailnotification.dedupe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.v.emailnotification.repository.ProcessEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DuplicateSkippingDeserializerTest {
+
+    private static final byte[] PAYLOAD = "{\"productId\":\"p-1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private Deserializer<Object> delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private ProcessedMessageCache cache;
+    private DuplicateSkippingDeserializer deserializer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        delegate = mock(Deserializer.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProcessedMessageCache(mock(ProcessEventRepository.class), meterRegistry, 1000, 0.01, 10, 100);
+        cache.assign(List.of(0));
+        deserializer = new DuplicateSkippingDeserializer(delegate, cache, meterRegistry);
+    }
+
+    @Test
+    public void testDeserialize_whenMessageIdWasRecentlyProcessed_skipsPayload() {
+        cache.inserted(0, "processed", true);
+
+        Object value = deserializer.deserialize("product-created-events-topic", headers("processed"), PAYLOAD);
+
+        assertSame(DuplicateSkippingDeserializer.SkippedRecord.DUPLICATE, value);
+        assertTrue(DuplicateSkippingDeserializer.isSkipped(
+                new ConsumerRecord<>("product-created-events-topic", 0, 0L, "key", value)));
+        verify(delegate, never()).deserialize(anyString(), any(Headers.class), any(byte[].class));
+        assertEquals(1, meterRegistry.get("email.dedupe.skipped").counter().count());
+        assertEquals(PAYLOAD.length, meterRegistry.get("email.dedupe.skipped.bytes").counter().count());
+    }
+
+    @Test
+    public void testDeserialize_whenMessageIdIsUnknown_delegates() {
+        Headers headers = headers("new");
+        when(delegate.deserialize("product-created-events-topic", headers, PAYLOAD)).thenReturn("event");
+
+        Object value = deserializer.deserialize("product-created-events-topic", headers, PAYLOAD);
+
+        assertEquals("event", value);
+        assertFalse(DuplicateSkippingDeserializer.isSkipped(
+                new ConsumerRecord<>("product-created-events-topic", 0, 0L, "key", value)));
+        assertEquals(0, meterRegistry.get("email.dedupe.skipped").counter().count());
+    }
+
+    private static Headers headers(String messageId) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("messageId", messageId.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
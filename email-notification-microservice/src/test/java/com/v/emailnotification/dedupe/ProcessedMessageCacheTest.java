@@ -0,0 +1,112 @@
+package com.v.emailnotification.dedupe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.v.emailnotification.repository.ProcessEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+public class ProcessedMessageCacheTest {
+
+    private ProcessEventRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private ProcessedMessageCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(ProcessEventRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProcessedMessageCache(repository, meterRegistry, 1000, 0.01, 2, 100);
+    }
+
+    @Test
+    public void testFindProcessed_whenIdIsNotInRebuiltFilter_answersWithoutQuery() {
+        when(repository.findRecentMessageIdsByPartition(0, PageRequest.of(0, 100))).thenReturn(List.of("stored"));
+        cache.assign(List.of(0));
+
+        assertTrue(cache.findProcessed(Map.of("new", 0)).isEmpty());
+
+        verify(repository, never()).findExistingMessageIds(any());
+        assertEquals(1, checks("new"));
+    }
+
+    @Test
+    public void testFindProcessed_whenIdWasStoredBeforeAssignment_confirmsWithQuery() {
+        when(repository.findRecentMessageIdsByPartition(0, PageRequest.of(0, 100))).thenReturn(List.of("stored"));
+        when(repository.findExistingMessageIds(any())).thenReturn(List.of("stored"));
+        cache.assign(List.of(0));
+
+        assertEquals(Set.of("stored"), cache.findProcessed(Map.of("stored", 0)));
+        assertEquals(1, checks("duplicate"));
+    }
+
+    @Test
+    public void testIsRecent_whenIdWasJustInserted_answersFromRecentIds() {
+        cache.assign(List.of(0));
+        cache.inserted(0, "processed", true);
+
+        assertTrue(cache.isRecent("processed"));
+        assertFalse(cache.isRecent("other"));
+        assertEquals(1, checks("new"));
+        assertEquals(1, checks("recent"));
+    }
+
+    @Test
+    public void testIsRecent_whenInsertFoundDuplicate_doesNotRememberIt() {
+        cache.inserted(0, "duplicate", false);
+
+        assertFalse(cache.isRecent("duplicate"));
+        assertEquals(1, checks("duplicate"));
+    }
+
+    @Test
+    public void testFindProcessed_whenRecentIdWasEvicted_filterStillSendsItToTheDatabase() {
+        when(repository.findExistingMessageIds(any())).thenReturn(List.of("first"));
+        cache.assign(List.of(0));
+        cache.markProcessed(0, "first");
+        cache.markProcessed(0, "second");
+        cache.markProcessed(0, "third");
+
+        assertEquals(Set.of("first"), cache.findProcessed(Map.of("first", 0)));
+        verify(repository).findExistingMessageIds(Set.of("first"));
+    }
+
+    @Test
+    public void testFindProcessed_whenPartitionIsNotAssigned_fallsBackToQuery() {
+        when(repository.findExistingMessageIds(any())).thenReturn(List.of());
+
+        assertTrue(cache.findProcessed(Map.of("unknown", 3)).isEmpty());
+
+        verify(repository).findExistingMessageIds(Set.of("unknown"));
+        assertEquals(1, checks("false-positive"));
+    }
+
+    @Test
+    public void testFindProcessed_queriesOnlyIdsTheFilterCannotRuleOut() {
+        when(repository.findRecentMessageIdsByPartition(0, PageRequest.of(0, 100))).thenReturn(List.of("stored"));
+        when(repository.findExistingMessageIds(any())).thenReturn(List.of("stored"));
+        cache.assign(List.of(0));
+
+        Set<String> processed = cache.findProcessed(Map.of("stored", 0, "new", 0));
+
+        assertEquals(Set.of("stored"), processed);
+        verify(repository).findExistingMessageIds(Set.of("stored"));
+    }
+
+    private double checks(String result) {
+        return meterRegistry.get("email.dedupe.checks").tag("result", result).counter().count();
+    }
+}
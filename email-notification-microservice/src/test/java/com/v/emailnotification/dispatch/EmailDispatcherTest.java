@@ -0,0 +1,115 @@
+package com.v.emailnotification.dispatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.v.core.ProductCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+public class EmailDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        meterRegistry = new SimpleMeterRegistry();
+        // a window long enough that only the test flushes
+        dispatcher = new EmailDispatcher(mailSender, new EmailTemplates(), meterRegistry, true,
+                "catalog@localhost", List.of("first@localhost", "second@localhost"), 60_000, 10);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testFlush_whenEventsQueuedInOneWindow_sendsOneEmailPerRecipient() throws Exception {
+
+        // Arrange
+        dispatcher.enqueue(new ProductCreatedEvent("p-1", "iPhone 11", new BigDecimal("600.99"), 3));
+        dispatcher.enqueue(new ProductCreatedEvent("p-2", "Pixel 8", new BigDecimal("499.00"), 1));
+
+        // Act
+        dispatcher.flush();
+
+        // Assert
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(2, received.length);
+        for (MimeMessage message : received) {
+            assertEquals("2 new product(s) in the catalog", message.getSubject());
+            String body = GreenMailUtil.getBody(message);
+            assertTrue(body.contains("- iPhone 11: 3 at 600.99 (id p-1)"), body);
+            assertTrue(body.contains("- Pixel 8: 1 at 499.00 (id p-2)"), body);
+        }
+        assertEquals(1, greenMail.getReceivedMessagesForDomain("first@localhost").length);
+        assertEquals(1, meterRegistry.get("email.dispatch.batch").timer().count());
+        assertEquals(2, meterRegistry.get("email.dispatch.batch.size").summary().totalAmount());
+        assertEquals(2, messages("sent"));
+    }
+
+    @Test
+    public void testFlush_whenServerWasRestarted_reconnectsForTheNextBatch() throws Exception {
+
+        // Arrange
+        dispatcher.enqueue(new ProductCreatedEvent("p-1", "iPhone 11", new BigDecimal("600.99"), 3));
+        dispatcher.flush();
+        greenMail.stop();
+        greenMail.start();
+
+        // Act
+        dispatcher.enqueue(new ProductCreatedEvent("p-2", "Pixel 8", new BigDecimal("499.00"), 1));
+        dispatcher.flush();
+
+        // Assert
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        assertEquals(4, messages("sent"));
+        assertEquals(0, messages("failed"));
+    }
+
+    @Test
+    public void testEnqueue_whenMaxPendingReached_dropsTheEvent() {
+
+        // Act
+        for (int i = 0; i < 11; i++) {
+            dispatcher.enqueue(new ProductCreatedEvent("p-" + i, "Product " + i, BigDecimal.ONE, 1));
+        }
+
+        // Assert
+        assertEquals(1, meterRegistry.get("email.dispatch.events").tag("outcome", "dropped").counter().count());
+    }
+
+    @Test
+    public void testRender_fillsPlaceholdersAndLeavesUnknownOnesEmpty() {
+
+        // Act
+        String text = EmailTemplate.compile("{{ a }}-{{b}}-{{missing}}-{{unclosed").render(Map.of("a", 1, "b", "x"));
+
+        // Assert
+        assertEquals("1-x--{{unclosed", text);
+    }
+
+    private double messages(String outcome) {
+        return meterRegistry.get("email.dispatch.messages").tag("outcome", outcome).counter().count();
+    }
+}
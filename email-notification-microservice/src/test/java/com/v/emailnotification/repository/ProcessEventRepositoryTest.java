@@ -0,0 +1,62 @@
+package com.v.emailnotification.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.v.emailnotification.entity.ProcessEventEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+@DataJpaTest
+public class ProcessEventRepositoryTest {
+
+    @Autowired
+    ProcessEventRepository processEventRepository;
+
+    @Test
+    public void testInsertIfAbsent_whenMessageIdIsRepeated_insertsOnce() {
+        String messageId = UUID.randomUUID().toString();
+
+        assertEquals(1, processEventRepository.insertIfAbsent(messageId, "product", "Test product", 0));
+        assertEquals(0, processEventRepository.insertIfAbsent(messageId, "product", "Test product", 0));
+
+        assertEquals(1, processEventRepository.findExistingMessageIds(List.of(messageId)).size());
+        assertEquals(List.of(messageId), processEventRepository.findRecentMessageIdsByPartition(0,
+                PageRequest.of(0, 10)));
+    }
+
+    @Test
+    public void testFindRecentMessageIdsByPartition_returnsTheNewestIdsOfThePartitionOnly() {
+        processEventRepository.insertIfAbsent("oldest", "product", null, 2);
+        processEventRepository.insertIfAbsent("other-partition", "product", null, 3);
+        processEventRepository.insertIfAbsent("middle", "product", null, 2);
+        processEventRepository.insertIfAbsent("newest", "product", null, 2);
+
+        assertEquals(List.of("newest", "middle"), processEventRepository.findRecentMessageIdsByPartition(2,
+                PageRequest.of(0, 2)));
+    }
+
+    @Test
+    public void testInsertIfAbsent_sharesTheSequenceWithSavedEntities() {
+        ProcessEventEntity saved = processEventRepository.saveAndFlush(ProcessEventEntity.builder()
+                .messageId(UUID.randomUUID().toString())
+                .productId("product")
+                .partitionId(1)
+                .build());
+        processEventRepository.insertIfAbsent(UUID.randomUUID().toString(), "product", null, 1);
+        ProcessEventEntity next = processEventRepository.saveAndFlush(ProcessEventEntity.builder()
+                .messageId(UUID.randomUUID().toString())
+                .productId("product")
+                .partitionId(1)
+                .build());
+
+        List<Long> ids = processEventRepository.findAll().stream().map(ProcessEventEntity::getId).toList();
+        assertEquals(3, ids.stream().distinct().count());
+        assertNotEquals(saved.getId(), next.getId());
+    }
+}
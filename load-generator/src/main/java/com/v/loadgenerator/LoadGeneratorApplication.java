@@ -0,0 +1,14 @@
+package com.v.loadgenerator;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class LoadGeneratorApplication {
+
+	public static void main(String[] args) {
+		// exit code 1 when a target saw errors, so scripts comparing releases notice
+		System.exit(SpringApplication.exit(SpringApplication.run(LoadGeneratorApplication.class, args)));
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.v.loadgenerator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.loadgenerator.embedded.EmbeddedServices;
+import com.v.loadgenerator.load.LoadResult;
+import com.v.loadgenerator.load.LoadTarget;
+import com.v.loadgenerator.load.OpenLoopLoad;
+import com.v.loadgenerator.payload.ProductPayloads;
+import com.v.loadgenerator.payload.TransferPayloads;
+import com.v.loadgenerator.report.LatencyReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+// Drives every enabled endpoint at its own rate at the same time, then prints one report per endpoint.
+// With loadgen.embedded=true the services are started locally against an embedded Kafka cluster first.
+@Component
+public class LoadGeneratorRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final Environment environment;
+    private final ObjectMapper objectMapper;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration timeout;
+    private final int maxOutstanding;
+    private final String reportDirectory;
+    private final boolean embedded;
+
+    private int exitCode;
+
+    public LoadGeneratorRunner(Environment environment, ObjectMapper objectMapper) {
+        this.environment = environment;
+        this.objectMapper = objectMapper;
+        this.warmup = environment.getProperty("loadgen.warmup", Duration.class, Duration.ofSeconds(10));
+        this.duration = environment.getProperty("loadgen.duration", Duration.class, Duration.ofSeconds(60));
+        this.timeout = environment.getProperty("loadgen.timeout", Duration.class, Duration.ofSeconds(10));
+        this.maxOutstanding = environment.getProperty("loadgen.max-outstanding", Integer.class, 10_000);
+        this.reportDirectory = environment.getProperty("loadgen.report.dir", "");
+        this.embedded = environment.getProperty("loadgen.embedded", Boolean.class, false);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        boolean products = environment.getProperty("loadgen.products.enabled", Boolean.class, true);
+        boolean transfers = environment.getProperty("loadgen.transfers.enabled", Boolean.class, true);
+        URI productsUri = URI.create(environment.getProperty("loadgen.products.url", "http://localhost:64298/products/create"));
+        URI transfersUri = URI.create(environment.getProperty("loadgen.transfers.url", "http://localhost:56067/transfers"));
+
+        EmbeddedServices services = null;
+        try {
+            if (embedded) {
+                services = EmbeddedServices.start(
+                        environment.getProperty("loadgen.embedded.brokers", Integer.class, 3),
+                        products ? Path.of(environment.getRequiredProperty("loadgen.embedded.products-jar")) : null,
+                        transfers ? Path.of(environment.getRequiredProperty("loadgen.embedded.transfer-jar")) : null,
+                        Path.of(environment.getRequiredProperty("loadgen.embedded.mock-service-jar")),
+                        Path.of(environment.getProperty("loadgen.embedded.log-dir", "target/loadgen-logs")),
+                        environment.getProperty("loadgen.embedded.startup-timeout", Duration.class, Duration.ofMinutes(2)));
+                productsUri = services.productsUri();
+                transfersUri = services.transfersUri();
+            }
+
+            List<LoadTarget> targets = new ArrayList<>();
+            if (products) {
+                targets.add(new LoadTarget("products", productsUri,
+                        environment.getProperty("loadgen.products.rate", Double.class, 200.0), productPayloads()));
+            }
+            if (transfers) {
+                targets.add(new LoadTarget("transfers", transfersUri,
+                        environment.getProperty("loadgen.transfers.rate", Double.class, 50.0), transferPayloads()));
+            }
+            report(drive(targets));
+        } finally {
+            if (services != null) {
+                services.close();
+            }
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    private List<LoadResult> drive(List<LoadTarget> targets) {
+        LOGGER.info("Driving {} for {} after {} warmup", targets.stream().map(LoadTarget::name).toList(), duration, warmup);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        OpenLoopLoad load = new OpenLoopLoad(httpClient, maxOutstanding, timeout);
+
+        // one scheduling thread per target, so one target falling behind never delays the other's schedule
+        ExecutorService schedulers = Executors.newFixedThreadPool(targets.size());
+        try {
+            List<CompletableFuture<LoadResult>> results = targets.stream()
+                    .map(target -> CompletableFuture.supplyAsync(() -> load.run(target, warmup, duration), schedulers))
+                    .toList();
+            return results.stream().map(CompletableFuture::join).toList();
+        } finally {
+            schedulers.shutdown();
+        }
+    }
+
+    private void report(List<LoadResult> results) throws IOException {
+        LatencyReport report = new LatencyReport(System.out);
+        for (LoadResult result : results) {
+            report.print(result);
+            if (!reportDirectory.isBlank()) {
+                report.write(result, Path.of(reportDirectory));
+            }
+            if (result.failed() > 0) {
+                exitCode = 1;
+            }
+        }
+    }
+
+    private ProductPayloads productPayloads() {
+        return new ProductPayloads(objectMapper,
+                environment.getProperty("loadgen.products.title-min-length", Integer.class, 8),
+                environment.getProperty("loadgen.products.title-max-length", Integer.class, 40),
+                environment.getProperty("loadgen.products.min-price", BigDecimal.class, new BigDecimal("1.00")),
+                environment.getProperty("loadgen.products.max-price", BigDecimal.class, new BigDecimal("2000.00")),
+                environment.getProperty("loadgen.products.min-quantity", Integer.class, 1),
+                environment.getProperty("loadgen.products.max-quantity", Integer.class, 50),
+                environment.getProperty("loadgen.products.idempotency-key-ratio", Double.class, 0.0),
+                environment.getProperty("loadgen.products.retry-ratio", Double.class, 0.0),
+                timeout);
+    }
+
+    private TransferPayloads transferPayloads() {
+        return new TransferPayloads(objectMapper,
+                environment.getProperty("loadgen.transfers.accounts", Integer.class, 1000),
+                environment.getProperty("loadgen.transfers.min-amount", BigDecimal.class, new BigDecimal("1.00")),
+                environment.getProperty("loadgen.transfers.max-amount", BigDecimal.class, new BigDecimal("500.00")),
+                timeout);
+    }
+}
@@ -0,0 +1,173 @@
+package com.v.loadgenerator.embedded;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+// Everything the products and transfer APIs need on one box: an embedded Kafka cluster, the mock service on
+// 8082 that TransferServiceImpl calls, and the services themselves started from their built jars as separate
+// JVMs. Pointing the jar paths at another build is how two releases are compared under the same load.
+// Service output goes to <logDirectory>/<service>.log.
+public class EmbeddedServices implements AutoCloseable {
+
+    private static final int MOCK_SERVICE_PORT = 8082;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final EmbeddedKafkaBroker cluster;
+    private final List<Process> processes = new ArrayList<>();
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final Path logDirectory;
+    private final Duration startupTimeout;
+
+    private URI productsUri;
+    private URI transfersUri;
+
+    private EmbeddedServices(int brokers, Path logDirectory, Duration startupTimeout) {
+        // the services create their topics with 3 replicas and min.insync.replicas 2
+        this.cluster = new EmbeddedKafkaKraftBroker(brokers, 3)
+                .brokerProperties(Map.of(
+                        "transaction.state.log.replication.factor", String.valueOf(Math.min(brokers, 3)),
+                        "transaction.state.log.min.isr", "1"));
+        this.logDirectory = logDirectory;
+        this.startupTimeout = startupTimeout;
+    }
+
+    public static EmbeddedServices start(int brokers, Path productsJar, Path transferJar, Path mockServiceJar,
+                                         Path logDirectory, Duration startupTimeout) throws IOException {
+        EmbeddedServices services = new EmbeddedServices(brokers, logDirectory, startupTimeout);
+        try {
+            services.startAll(productsJar, transferJar, mockServiceJar);
+            return services;
+        } catch (IOException | RuntimeException e) {
+            services.close();
+            throw e;
+        }
+    }
+
+    public URI productsUri() {
+        return productsUri;
+    }
+
+    public URI transfersUri() {
+        return transfersUri;
+    }
+
+    private void startAll(Path productsJar, Path transferJar, Path mockServiceJar) throws IOException {
+        cluster.afterPropertiesSet();
+        String brokers = cluster.getBrokersAsString();
+        LOGGER.info("Embedded Kafka cluster at {}", brokers);
+        Files.createDirectories(logDirectory);
+
+        if (transferJar != null) {
+            launch("mockservice", mockServiceJar, List.of("--server.port=" + MOCK_SERVICE_PORT),
+                    URI.create("http://localhost:" + MOCK_SERVICE_PORT + "/response/200"));
+        }
+        if (productsJar != null) {
+            int port = freePort();
+            launch("products", productsJar, List.of("--server.port=" + port,
+                            "--spring.kafka.bootstrap-servers=" + brokers,
+                            "--spring.kafka.producer.bootstrap-servers=" + brokers),
+                    URI.create("http://localhost:" + port + "/actuator/health"));
+            productsUri = URI.create("http://localhost:" + port + "/products/create");
+        }
+        if (transferJar != null) {
+            int port = freePort();
+            launch("transfer", transferJar, List.of("--server.port=" + port,
+                            "--spring.kafka.bootstrap-servers=" + brokers,
+                            "--spring.kafka.producer.bootstrap-servers=" + brokers),
+                    URI.create("http://localhost:" + port + "/actuator/health"));
+            transfersUri = URI.create("http://localhost:" + port + "/transfers");
+        }
+    }
+
+    private void launch(String name, Path jar, List<String> args, URI readyUri) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("No " + name + " jar at " + jar.toAbsolutePath() + ", build it first");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+        command.addAll(args);
+
+        Path log = logDirectory.resolve(name + ".log");
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        processes.add(process);
+        LOGGER.info("Started {} (pid {}), log in {}", name, process.pid(), log.toAbsolutePath());
+
+        awaitReady(name, process, readyUri);
+    }
+
+    private void awaitReady(String name, Process process, URI readyUri) {
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(readyUri).timeout(Duration.ofSeconds(1)).GET().build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(name + " exited with " + process.exitValue() + ", see its log");
+            }
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + name, e);
+            }
+            sleep(500);
+        }
+        throw new IllegalStateException(name + " not ready at " + readyUri + " after " + startupTimeout);
+    }
+
+    @Override
+    public void close() {
+        for (int i = processes.size() - 1; i >= 0; i--) {
+            Process process = processes.get(i);
+            process.destroy();
+            try {
+                if (!process.waitFor(15, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        cluster.destroy();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
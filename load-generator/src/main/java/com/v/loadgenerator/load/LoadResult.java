@@ -0,0 +1,32 @@
+package com.v.loadgenerator.load;
+
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+// responseTime is measured from the moment a request was scheduled to go out, serviceTime from the moment it
+// actually went out. They only differ when the generator fell behind or the client queued the request, and
+// responseTime is the one that matches what a user at that rate would have seen (no coordinated omission).
+public record LoadResult(String name, double targetRate, long scheduled, long dropped, long elapsedNanos,
+                         Map<Integer, Long> statusCounts, Map<String, Long> errorCounts,
+                         Histogram responseTime, Histogram serviceTime) {
+
+    public long completed() {
+        return responseTime.getTotalCount();
+    }
+
+    public long successful() {
+        return statusCounts.entrySet().stream()
+                .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+
+    public long failed() {
+        return scheduled - successful();
+    }
+
+    public double achievedRate() {
+        return completed() / (elapsedNanos / 1e9);
+    }
+}
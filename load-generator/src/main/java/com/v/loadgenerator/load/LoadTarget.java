@@ -0,0 +1,9 @@
+package com.v.loadgenerator.load;
+
+import java.net.URI;
+
+import com.v.loadgenerator.payload.RequestFactory;
+
+// one endpoint driven at a fixed rate (requests per second)
+public record LoadTarget(String name, URI uri, double ratePerSecond, RequestFactory requests) {
+}
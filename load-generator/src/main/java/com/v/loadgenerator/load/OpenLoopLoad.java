@@ -0,0 +1,125 @@
+package com.v.loadgenerator.load;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Sends requests on a fixed schedule no matter how fast the responses come back (open loop). A slow response
+// never delays the next request, so a stall shows up as the latency of every request scheduled during it
+// instead of as a lower request rate, which is what a closed loop of waiting clients would report.
+//
+// Requests scheduled during the warmup are sent but not recorded. When maxOutstanding requests are already
+// waiting for a response, new ones are dropped and counted instead of piling up without bound.
+public class OpenLoopLoad {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final HttpClient httpClient;
+    private final int maxOutstanding;
+    private final Duration drainTimeout;
+
+    public OpenLoopLoad(HttpClient httpClient, int maxOutstanding, Duration drainTimeout) {
+        this.httpClient = httpClient;
+        this.maxOutstanding = maxOutstanding;
+        this.drainTimeout = drainTimeout;
+    }
+
+    public LoadResult run(LoadTarget target, Duration warmup, Duration duration) {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / target.ratePerSecond();
+        Histogram responseTime = new ConcurrentHistogram(3);
+        Histogram serviceTime = new ConcurrentHistogram(3);
+        Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicBoolean recording = new AtomicBoolean(true);
+        long scheduled = 0;
+        long dropped = 0;
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intendedStart = start + (long) (i * intervalNanos);
+            if (intendedStart >= end) {
+                break;
+            }
+            parkUntil(intendedStart);
+
+            boolean measured = intendedStart >= measureFrom;
+            if (measured) {
+                scheduled++;
+            }
+            if (outstanding.get() >= maxOutstanding) {
+                if (measured) {
+                    dropped++;
+                }
+                continue;
+            }
+
+            outstanding.incrementAndGet();
+            long sentAt = System.nanoTime();
+            httpClient.sendAsync(target.requests().next(target.uri()), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, exception) -> {
+                        long now = System.nanoTime();
+                        outstanding.decrementAndGet();
+                        if (!measured || !recording.get()) {
+                            return;
+                        }
+                        responseTime.recordValue(now - intendedStart);
+                        serviceTime.recordValue(now - sentAt);
+                        if (exception != null) {
+                            Throwable cause = exception.getCause() != null ? exception.getCause() : exception;
+                            errorCounts.computeIfAbsent(cause.getClass().getSimpleName(), key -> new LongAdder())
+                                    .increment();
+                        } else {
+                            statusCounts.computeIfAbsent(response.statusCode(), key -> new LongAdder()).increment();
+                        }
+                    });
+        }
+
+        awaitOutstanding(target, outstanding);
+        long elapsed = System.nanoTime() - measureFrom;
+        // responses still missing now count as failed, and late ones must not change the histograms being reported
+        recording.set(false);
+
+        return new LoadResult(target.name(), target.ratePerSecond(), scheduled, dropped, elapsed,
+                snapshot(statusCounts), snapshot(errorCounts), responseTime.copy(), serviceTime.copy());
+    }
+
+    private void awaitOutstanding(LoadTarget target, AtomicInteger outstanding) {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        if (outstanding.get() > 0) {
+            LOGGER.warn("{}: {} requests still without response after {}", target.name(), outstanding.get(), drainTimeout);
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static <K> Map<K, Long> snapshot(Map<K, LongAdder> counts) {
+        Map<K, Long> snapshot = new TreeMap<>();
+        counts.forEach((key, count) -> snapshot.put(key, count.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,106 @@
+package com.v.loadgenerator.payload;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// POST /products/create bodies: titles of random catalog words within a length range, uniform prices and
+// quantities. A share of the requests carries an Idempotency-Key, and a share of those is an exact repeat of
+// the previous keyed request, the way a client retries after a timeout.
+public class ProductPayloads implements RequestFactory {
+
+    private static final List<String> WORDS = List.of("iPhone", "Galaxy", "Pixel", "Pro", "Max", "Ultra", "Mini",
+            "128GB", "256GB", "512GB", "Black", "Silver", "Midnight", "Graphite", "Case", "Charger", "Watch", "Buds");
+
+    private final ObjectMapper objectMapper;
+    private final int titleMinLength;
+    private final int titleMaxLength;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final int minQuantity;
+    private final int maxQuantity;
+    private final double idempotencyKeyRatio;
+    private final double retryRatio;
+    private final Duration timeout;
+    private final SplittableRandom random = new SplittableRandom();
+
+    private String lastIdempotencyKey;
+    private byte[] lastKeyedBody;
+
+    public ProductPayloads(ObjectMapper objectMapper, int titleMinLength, int titleMaxLength,
+                           BigDecimal minPrice, BigDecimal maxPrice, int minQuantity, int maxQuantity,
+                           double idempotencyKeyRatio, double retryRatio, Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.titleMinLength = titleMinLength;
+        this.titleMaxLength = titleMaxLength;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.idempotencyKeyRatio = idempotencyKeyRatio;
+        this.retryRatio = retryRatio;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public HttpRequest next(URI uri) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+
+        if (lastIdempotencyKey != null && random.nextDouble() < idempotencyKeyRatio * retryRatio) {
+            return request.header("Idempotency-Key", lastIdempotencyKey)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(lastKeyedBody))
+                    .build();
+        }
+
+        byte[] body = body();
+        if (random.nextDouble() < idempotencyKeyRatio) {
+            lastIdempotencyKey = UUID.randomUUID().toString();
+            lastKeyedBody = body;
+            request.header("Idempotency-Key", lastIdempotencyKey);
+        }
+        return request.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private byte[] body() {
+        Map<String, Object> product = new LinkedHashMap<>();
+        product.put("title", title());
+        product.put("price", price());
+        product.put("quantity", random.nextInt(minQuantity, maxQuantity + 1));
+        try {
+            return objectMapper.writeValueAsBytes(product);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String title() {
+        int length = random.nextInt(titleMinLength, titleMaxLength + 1);
+        StringBuilder title = new StringBuilder(length + 16);
+        while (title.length() < length) {
+            if (!title.isEmpty()) {
+                title.append(' ');
+            }
+            title.append(WORDS.get(random.nextInt(WORDS.size())));
+        }
+        title.setLength(length);
+        return title.toString().trim();
+    }
+
+    private BigDecimal price() {
+        double fraction = random.nextDouble();
+        return minPrice.add(maxPrice.subtract(minPrice).multiply(BigDecimal.valueOf(fraction)))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,10 @@
+package com.v.loadgenerator.payload;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+// Builds the next request for a target. Only ever called from the target's scheduling thread.
+public interface RequestFactory {
+
+    HttpRequest next(URI uri);
+}
@@ -0,0 +1,59 @@
+package com.v.loadgenerator.payload;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// POST /transfers bodies: sender and recipient drawn from a fixed pool of accounts (never the same one),
+// uniform amounts. A small pool concentrates the load on few keys, a large one spreads it.
+public class TransferPayloads implements RequestFactory {
+
+    private final ObjectMapper objectMapper;
+    private final int accounts;
+    private final BigDecimal minAmount;
+    private final BigDecimal maxAmount;
+    private final Duration timeout;
+    private final SplittableRandom random = new SplittableRandom();
+
+    public TransferPayloads(ObjectMapper objectMapper, int accounts, BigDecimal minAmount, BigDecimal maxAmount,
+                            Duration timeout) {
+        if (accounts < 2) {
+            throw new IllegalArgumentException("A transfer needs at least 2 accounts, got " + accounts);
+        }
+        this.objectMapper = objectMapper;
+        this.accounts = accounts;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public HttpRequest next(URI uri) {
+        int sender = random.nextInt(accounts);
+        int recipient = (sender + 1 + random.nextInt(accounts - 1)) % accounts;
+
+        Map<String, Object> transfer = new LinkedHashMap<>();
+        transfer.put("senderId", "account-" + sender);
+        transfer.put("recepientId", "account-" + recipient);
+        transfer.put("amount", minAmount.add(maxAmount.subtract(minAmount)
+                .multiply(BigDecimal.valueOf(random.nextDouble()))).setScale(2, RoundingMode.HALF_UP));
+
+        try {
+            return HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(transfer)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.v.loadgenerator.report;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import com.v.loadgenerator.load.LoadResult;
+import org.HdrHistogram.Histogram;
+
+// Percentile summary on stdout, plus the full percentile distribution per target in HdrHistogram's .hgrm
+// format when a directory is given. Two .hgrm files of different releases can be plotted side by side with
+// the HdrHistogram plotter (https://hdrhistogram.github.io/HdrHistogram/plotFiles.html).
+public class LatencyReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final PrintStream out;
+
+    public LatencyReport(PrintStream out) {
+        this.out = out;
+    }
+
+    public void print(LoadResult result) {
+        out.printf(Locale.ROOT, "%n== %s: target %.1f req/s, achieved %.1f req/s%n",
+                result.name(), result.targetRate(), result.achievedRate());
+        out.printf(Locale.ROOT, "   scheduled %d, completed %d, 2xx %d, failed %d (dropped %d)%n",
+                result.scheduled(), result.completed(), result.successful(), result.failed(), result.dropped());
+        if (!result.statusCounts().isEmpty()) {
+            out.printf(Locale.ROOT, "   status codes %s%n", result.statusCounts());
+        }
+        if (!result.errorCounts().isEmpty()) {
+            out.printf(Locale.ROOT, "   errors %s%n", result.errorCounts());
+        }
+
+        out.printf(Locale.ROOT, "   %-28s", "latency ms");
+        for (double percentile : PERCENTILES) {
+            out.printf(Locale.ROOT, "%10s", "p" + format(percentile));
+        }
+        out.printf(Locale.ROOT, "%10s%n", "max");
+        row("response (from intended)", result.responseTime());
+        row("service (from actual send)", result.serviceTime());
+    }
+
+    public void write(LoadResult result, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(result.name() + ".hgrm");
+        try (PrintStream hgrm = new PrintStream(Files.newOutputStream(file))) {
+            result.responseTime().outputPercentileDistribution(hgrm, NANOS_PER_MILLI);
+        }
+        out.printf(Locale.ROOT, "   percentile distribution written to %s%n", file.toAbsolutePath());
+    }
+
+    private void row(String label, Histogram histogram) {
+        out.printf(Locale.ROOT, "   %-28s", label);
+        for (double percentile : PERCENTILES) {
+            out.printf(Locale.ROOT, "%10.2f", histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+        }
+        out.printf(Locale.ROOT, "%10.2f%n", histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile);
+    }
+}
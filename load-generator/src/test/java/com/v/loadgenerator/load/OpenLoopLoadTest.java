@@ -0,0 +1,71 @@
+package com.v.loadgenerator.load;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenLoopLoadTest {
+
+	private HttpServer server;
+	private URI uri;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/slow", exchange -> {
+			sleep(50);
+			exchange.sendResponseHeaders(201, -1);
+			exchange.close();
+		});
+		// a single handler thread, so requests queue up on the server once the rate is above 20/s
+		server.setExecutor(Executors.newSingleThreadExecutor());
+		server.start();
+		uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/slow");
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	void testRun_whenServerIsSlowerThanTheRate_keepsTheScheduleAndReportsQueueingInResponseTime() {
+
+		// Arrange
+		OpenLoopLoad load = new OpenLoopLoad(HttpClient.newHttpClient(), 1000, Duration.ofSeconds(10));
+		LoadTarget target = new LoadTarget("slow", uri, 40,
+				requestUri -> HttpRequest.newBuilder(requestUri).POST(HttpRequest.BodyPublishers.noBody()).build());
+
+		// Act
+		LoadResult result = load.run(target, Duration.ZERO, Duration.ofSeconds(1));
+
+		// Assert
+		// every scheduled request went out although the server only manages ~20/s
+		assertEquals(40, result.scheduled());
+		assertEquals(40, result.successful());
+		assertEquals(0, result.failed());
+		// the last requests waited behind earlier ones, measured from their intended start that is far above 50ms
+		assertTrue(result.responseTime().getMaxValue() > Duration.ofMillis(500).toNanos());
+		assertTrue(result.responseTime().getValueAtPercentile(50) >= result.serviceTime().getValueAtPercentile(50));
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -4,11 +4,15 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.ProducerProfile;
+import com.v.core.kafka.PublishMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -33,15 +37,14 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.properties.delivery.timeout.ms}")
     private String deliveryTimeout;
 
-    @Value("${spring.kafka.producer.properties.linger.ms}")
-    private String linger;
+    // linger, batch size, compression, buffer memory and in-flight requests come from the profile
+    @Value("${kafka.producer.profile:latency}")
+    private String producerProfile;
 
     @Value("${spring.kafka.producer.properties.request.timeout.ms}")
     private String requestTimeout;
 
-    //custome config set
-    @Bean
-    ProducerFactory<String, ProductCreatedEvent> producerFactory() {
+    public Map<String, Object> producerConfigs() {
 
         Map<String, Object> config = new HashMap<>();
 
@@ -50,19 +53,44 @@ public class KafkaConfig {
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializer);
         config.put(ProducerConfig.ACKS_CONFIG, acks);
         config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeout);
-        config.put(ProducerConfig.LINGER_MS_CONFIG, linger);
         config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeout);
 
-        return new DefaultKafkaProducerFactory<>(config);
+        return ProducerProfile.from(producerProfile).applyTo(config);
+    }
+
+    //custome config set
+    @Bean
+    ProducerFactory<String, ProductCreatedEvent> producerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerConfigs());
     }
 
 
     //adding config to kafka template
     @Bean
+    @Primary
     KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate() {
         return new KafkaTemplate<String, ProductCreatedEvent>(producerFactory());
     }
 
+    // producer for OutboxRelay, nobody waits on it per request so it can trade latency for bigger batches
+    @Bean
+    ProducerFactory<String, ProductCreatedEvent> outboxProducerFactory() {
+        Map<String, Object> config = ProducerProfile.THROUGHPUT.applyTo(producerConfigs());
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        return new DefaultKafkaProducerFactory<>(config);
+    }
+
+    @Bean
+    KafkaTemplate<String, ProductCreatedEvent> outboxKafkaTemplate() {
+        return new KafkaTemplate<>(outboxProducerFactory());
+    }
+
+    @Bean
+    PublishMetrics publishMetrics(MeterRegistry meterRegistry,
+                                  @Value("${kafka.publish.log-sample-rate:1000}") long logSampleRate) {
+        return new PublishMetrics(meterRegistry, logSampleRate);
+    }
+
     @Bean
     NewTopic createTopic() {
         return TopicBuilder.name("product-created-events-topic")
@@ -1,14 +1,29 @@
 package com.v.productsmicroservice.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.v.productsmicroservice.dto.CreateProductRestModel;
+import com.v.productsmicroservice.requestresponse.BulkProductResult;
 import com.v.productsmicroservice.requestresponse.ResponseStructure;
+import jakarta.servlet.http.HttpServletResponse;
 import com.v.productsmicroservice.service.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -17,18 +32,71 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/products") //http://localhost:<port>/products
 public class ProductController {
 
+	static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
 	ProductService productService;
+	private final ObjectMapper objectMapper;
+	private final boolean asyncPublish;
 	private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
 
-	public ProductController(ProductService productService) {
+	public ProductController(ProductService productService, ObjectMapper objectMapper,
+							 @Value("${products.publish.mode:sync}") String publishMode) {
 		this.productService = productService;
+		this.objectMapper = objectMapper;
+		this.asyncPublish = "async".equalsIgnoreCase(publishMode);
 	}
 
+	// products.publish.mode=async keeps the request thread free while the broker acknowledges the event.
+	// Retries that repeat the Idempotency-Key of an earlier request get that request's product id back.
 	@PostMapping("/create")
-	public ResponseEntity<ResponseStructure<String>> createProduct(@RequestBody CreateProductRestModel product) {
+	public CompletableFuture<ResponseEntity<ResponseStructure<String>>> createProduct(
+			@RequestBody CreateProductRestModel product,
+			@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+
+		if (asyncPublish) {
+			return productService.createProductAsync(product, idempotencyKey).thenApply(this::created);
+		}
+
+		String productId = productService.createProduct(product, idempotencyKey);
+		return CompletableFuture.completedFuture(created(productId));
+	}
+
+	// Accepts a JSON array or NDJSON (one product per line) and answers with one NDJSON result per product.
+	// Both bodies are read item by item from the request stream and results are written as they complete.
+	@PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+	public void createProducts(InputStream body, HttpServletResponse response) throws IOException {
 
-		String productId = productService.createProduct(product);
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+		try (MappingIterator<CreateProductRestModel> products =
+					 objectMapper.readerFor(CreateProductRestModel.class).readValues(body);
+			 SequenceWriter results = objectMapper.writerFor(BulkProductResult.class)
+					 .withRootValueSeparator("\n")
+					 .writeValues(response.getOutputStream())) {
+
+			try {
+				productService.createProducts(products, result -> write(results, result));
+			} catch (RuntimeException e) {
+				// the iterator wraps parse errors in runtime exceptions, anything else is not ours to handle
+				if (!(e instanceof RuntimeJsonMappingException) && !(e.getCause() instanceof JsonProcessingException)) {
+					throw e;
+				}
+				LOGGER.warn("Bulk product upload stopped on malformed input: {}", e.getMessage());
+				write(results, BulkProductResult.builder().error("Malformed input: " + e.getMessage()).build());
+			}
+		}
+	}
+
+	private static void write(SequenceWriter results, BulkProductResult result) {
+		try {
+			results.write(result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
+	private ResponseEntity<ResponseStructure<String>> created(String productId) {
 		ResponseStructure<String> response = ResponseStructure.<String>builder()
 				.data(productId)
 				.message("Product created successfully")
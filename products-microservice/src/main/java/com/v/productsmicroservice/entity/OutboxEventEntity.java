@@ -0,0 +1,56 @@
+package com.v.productsmicroservice.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Event waiting to be relayed to Kafka, written in the same transaction as the product row.
+// sentAt stays null until the relay got the broker ack for it.
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "OUTBOX_EVENTS", indexes = @Index(name = "IDX_OUTBOX_PENDING", columnList = "sentAt, id"))
+public class OutboxEventEntity {
+
+    // pooled sequence so Hibernate can batch the inserts of a bulk upload
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "OUTBOX_EVENTS_SEQ", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    // record key, the product id
+    @Column(nullable = false)
+    private String aggregateId;
+
+    @Column(nullable = false)
+    private String messageId;
+
+    // ProductCreatedEvent as JSON
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column
+    private Instant sentAt;
+
+}
@@ -21,6 +21,18 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.CONFLICT);
     }
 
+    // in-flight publish limit reached, the client should back off and retry
+    @ExceptionHandler(PublishCapacityExceededException.class)
+    public ResponseEntity<ErrorMessage> handlePublishCapacityExceeded(PublishCapacityExceededException ex) {
+        ErrorMessage error = ErrorMessage.builder()
+                .timestamp(new Date())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .message(ex.getMessage())
+                .path("/products/create")
+                .build();
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorMessage> handleGeneralException(Exception ex) {
         ErrorMessage error = ErrorMessage.builder()
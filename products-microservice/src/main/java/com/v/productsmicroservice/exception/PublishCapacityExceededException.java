@@ -0,0 +1,7 @@
+package com.v.productsmicroservice.exception;
+
+public class PublishCapacityExceededException extends RuntimeException {
+    public PublishCapacityExceededException(String message) {
+        super(message);
+    }
+}
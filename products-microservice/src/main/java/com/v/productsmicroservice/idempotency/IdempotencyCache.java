@@ -0,0 +1,32 @@
+package com.v.productsmicroservice.idempotency;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Idempotency-Key -> product id of the request that first used the key. Entries are futures so a retry that
+// arrives while the first request is still publishing waits for it instead of publishing again. Futures that
+// complete exceptionally are dropped by the cache, so a failed request can be retried with the same key.
+// Bounded in size and age: a key is only protected for as long as clients are expected to retry.
+@Component
+public class IdempotencyCache {
+
+    private final AsyncCache<String, String> productIds;
+
+    public IdempotencyCache(@Value("${products.idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${products.idempotency.ttl:PT24H}") Duration ttl) {
+        this.productIds = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    // null when the key is new and the caller has to complete pending, otherwise the earlier request's result
+    public CompletableFuture<String> putIfAbsent(String idempotencyKey, CompletableFuture<String> pending) {
+        return productIds.asMap().putIfAbsent(idempotencyKey, pending);
+    }
+}
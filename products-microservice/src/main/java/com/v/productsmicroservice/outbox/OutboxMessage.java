@@ -0,0 +1,6 @@
+package com.v.productsmicroservice.outbox;
+
+import com.v.core.ProductCreatedEvent;
+
+public record OutboxMessage(String messageId, ProductCreatedEvent event) {
+}
@@ -0,0 +1,132 @@
+package com.v.productsmicroservice.outbox;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.PublishMetrics;
+import com.v.productsmicroservice.entity.OutboxEventEntity;
+import com.v.productsmicroservice.repository.OutboxEventRepository;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Polls pending outbox rows in large batches, publishes the whole batch without waiting per record and
+// marks everything that was acknowledged with a single update. Rows whose send failed stay pending and
+// are picked up again on the next run, so a broker outage only delays events. Once a send fails the rest of the
+// batch is not handed to the producer at all: with the broker down every send() blocks up to max.block.ms.
+@Component
+@ConditionalOnProperty(name = "products.outbox.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final PublishMetrics publishMetrics;
+    private final int batchSize;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       @Qualifier("outboxKafkaTemplate") KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate,
+                       TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                       PublishMetrics publishMetrics,
+                       @Value("${products.outbox.relay.batch-size:500}") int batchSize) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.publishMetrics = publishMetrics;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${products.outbox.relay.interval-ms:200}")
+    public void relay() {
+        List<OutboxEventEntity> batch;
+        do {
+            batch = outboxEventRepository.findBySentAtIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Long> sentIds = publish(batch);
+            if (!sentIds.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status ->
+                        outboxEventRepository.markSent(sentIds, Instant.now()));
+            }
+
+            if (sentIds.size() < batch.size()) {
+                // something failed, leave the rest for the next run instead of spinning on a sick broker
+                LOGGER.warn("*****Relayed {} of {} outbox events, retrying the rest later", sentIds.size(), batch.size());
+                return;
+            }
+            // a full batch means there is probably more backlog, keep draining
+        } while (batch.size() == batchSize);
+    }
+
+    private List<Long> publish(List<OutboxEventEntity> batch) {
+        List<CompletableFuture<SendResult<String, ProductCreatedEvent>>> futures = new ArrayList<>(batch.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        for (OutboxEventEntity outboxEvent : batch) {
+            // a failed send, synchronous or already acked as failed, stops the batch, the rest stays pending
+            if (failed.get()) {
+                break;
+            }
+            futures.add(send(outboxEvent).whenComplete((sendResult, exception) -> {
+                if (exception != null) {
+                    failed.set(true);
+                }
+            }));
+        }
+
+        // the producer batches everything that was handed over above, wait for all acks at once
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .handle((ignored, exception) -> null)
+                .join();
+
+        List<Long> sentIds = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            if (!futures.get(i).isCompletedExceptionally()) {
+                sentIds.add(batch.get(i).getId());
+            }
+        }
+        return sentIds;
+    }
+
+    private CompletableFuture<SendResult<String, ProductCreatedEvent>> send(OutboxEventEntity outboxEvent) {
+        long start = publishMetrics.start();
+        try {
+            ProductCreatedEvent productCreatedEvent =
+                    objectMapper.readValue(outboxEvent.getPayload(), ProductCreatedEvent.class);
+
+            ProducerRecord<String, ProductCreatedEvent> producerRecord = new ProducerRecord<>(
+                    outboxEvent.getTopic(),
+                    outboxEvent.getAggregateId(),
+                    productCreatedEvent
+            );
+            producerRecord.headers().add("messageId", outboxEvent.getMessageId().getBytes());
+
+            return kafkaTemplate.send(producerRecord).whenComplete((sendResult, exception) ->
+                    publishMetrics.record(outboxEvent.getTopic(), start,
+                            sendResult == null ? null : sendResult.getRecordMetadata(), exception));
+        } catch (Exception e) {
+            publishMetrics.record(outboxEvent.getTopic(), start, null, e);
+            LOGGER.error("*****Failed to relay outbox event {}: {}", outboxEvent.getId(), e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
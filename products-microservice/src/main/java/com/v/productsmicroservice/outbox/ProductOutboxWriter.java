@@ -0,0 +1,62 @@
+package com.v.productsmicroservice.outbox;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.core.ProductCreatedEvent;
+import com.v.productsmicroservice.entity.OutboxEventEntity;
+import com.v.productsmicroservice.entity.ProductEntity;
+import com.v.productsmicroservice.exception.EventPublishException;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Writes products and their ProductCreatedEvent outbox rows in one local transaction.
+// Nothing here talks to Kafka, OutboxRelay publishes the rows afterwards.
+@Component
+public class ProductOutboxWriter {
+
+    private static final String PRODUCT_CREATED_EVENTS_TOPIC = "product-created-events-topic";
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public ProductOutboxWriter(EntityManager entityManager, ObjectMapper objectMapper) {
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional
+    public void write(List<OutboxMessage> messages) {
+        Instant now = Instant.now();
+        for (OutboxMessage message : messages) {
+            ProductCreatedEvent event = message.event();
+
+            // persist instead of save(): the product id is assigned, save() would merge and select first
+            entityManager.persist(ProductEntity.builder()
+                    .productId(event.getProductId())
+                    .title(event.getTitle())
+                    .price(event.getPrice())
+                    .quantity(event.getQuantity())
+                    .build());
+
+            entityManager.persist(OutboxEventEntity.builder()
+                    .topic(PRODUCT_CREATED_EVENTS_TOPIC)
+                    .aggregateId(event.getProductId())
+                    .messageId(message.messageId())
+                    .payload(toJson(event))
+                    .createdAt(now)
+                    .build());
+        }
+    }
+
+    private String toJson(ProductCreatedEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new EventPublishException("*****Could not serialize product event", e);
+        }
+    }
+}
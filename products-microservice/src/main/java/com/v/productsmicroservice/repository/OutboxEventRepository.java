@@ -0,0 +1,25 @@
+package com.v.productsmicroservice.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import com.v.productsmicroservice.entity.OutboxEventEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    // oldest pending events first, the page size is the relay batch size
+    List<OutboxEventEntity> findBySentAtIsNullOrderByIdAsc(Pageable pageable);
+
+    // one statement for the whole relayed batch instead of an update per row
+    @Modifying
+    @Query("update OutboxEventEntity o set o.sentAt = :sentAt where o.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+}
@@ -0,0 +1,18 @@
+package com.v.productsmicroservice.requestresponse;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+// one line of the NDJSON response of /products/bulk, either partition/offset or error is set
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkProductResult {
+
+    private Long index;        // position of the item in the request body
+    private String productId;
+    private Integer partition;
+    private Long offset;
+    private String error;
+}
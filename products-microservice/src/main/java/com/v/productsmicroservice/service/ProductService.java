@@ -1,10 +1,26 @@
 package com.v.productsmicroservice.service;
 
 
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 import com.v.productsmicroservice.dto.CreateProductRestModel;
+import com.v.productsmicroservice.requestresponse.BulkProductResult;
 
 public interface ProductService {
 
 	String createProduct(CreateProductRestModel productRestModel);
 
+	// idempotencyKey becomes the event messageId, repeating a key returns the first product id without publishing
+	String createProduct(CreateProductRestModel productRestModel, String idempotencyKey);
+
+	// completes from the send callback instead of blocking the calling thread
+	CompletableFuture<String> createProductAsync(CreateProductRestModel productRestModel);
+
+	CompletableFuture<String> createProductAsync(CreateProductRestModel productRestModel, String idempotencyKey);
+
+	// pipelines every product through the producer, results are handed over in input order
+	void createProducts(Iterator<CreateProductRestModel> productRestModels, Consumer<BulkProductResult> results);
+
 }
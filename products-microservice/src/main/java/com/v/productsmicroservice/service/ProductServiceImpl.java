@@ -1,14 +1,31 @@
 package com.v.productsmicroservice.service;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 import com.v.core.ProductCreatedEvent;
+import com.v.core.kafka.PublishMetrics;
 import com.v.productsmicroservice.dto.CreateProductRestModel;
 import com.v.productsmicroservice.exception.EventPublishException;
+import com.v.productsmicroservice.exception.PublishCapacityExceededException;
+import com.v.productsmicroservice.idempotency.IdempotencyCache;
+import com.v.productsmicroservice.outbox.OutboxMessage;
+import com.v.productsmicroservice.outbox.ProductOutboxWriter;
+import com.v.productsmicroservice.requestresponse.BulkProductResult;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
@@ -16,17 +33,66 @@ import org.springframework.stereotype.Service;
 @Service
 public class ProductServiceImpl implements ProductService {
 
+	private static final String PRODUCT_CREATED_EVENTS_TOPIC = "product-created-events-topic";
+
 	private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+	private final Semaphore inFlightPermits;
+	private final int bulkWindowSize;
+	private final ProductOutboxWriter productOutboxWriter;
+	private final boolean outboxEnabled;
+	private final PublishMetrics publishMetrics;
+	private final IdempotencyCache idempotencyCache;
 	private final Logger LOGGER  = LoggerFactory.getLogger(this.getClass());
 
-	public ProductServiceImpl(KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate) {
+	public ProductServiceImpl(KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate,
+							  ProductOutboxWriter productOutboxWriter,
+							  PublishMetrics publishMetrics,
+							  IdempotencyCache idempotencyCache,
+							  @Value("${products.publish.max-in-flight:1000}") int maxInFlightPublishes,
+							  @Value("${products.bulk.max-in-flight:1000}") int bulkWindowSize,
+							  @Value("${products.outbox.enabled:false}") boolean outboxEnabled) {
 		this.kafkaTemplate = kafkaTemplate;
+		this.productOutboxWriter = productOutboxWriter;
+		this.inFlightPermits = new Semaphore(maxInFlightPublishes);
+		this.bulkWindowSize = bulkWindowSize;
+		this.outboxEnabled = outboxEnabled;
+		this.publishMetrics = publishMetrics;
+		this.idempotencyCache = idempotencyCache;
 	}
 
 
 //	 Synchronous
 	@Override
 	public String createProduct(CreateProductRestModel productRestModel) {
+		return createProduct(productRestModel, null);
+	}
+
+	// A key seen before is answered with the product id of the first request, nothing is published again.
+	@Override
+	public String createProduct(CreateProductRestModel productRestModel, String idempotencyKey) {
+		if (idempotencyKey == null || idempotencyKey.isBlank()) {
+			return publishProduct(productRestModel, null);
+		}
+
+		CompletableFuture<String> pending = new CompletableFuture<>();
+		CompletableFuture<String> earlier = idempotencyCache.putIfAbsent(idempotencyKey, pending);
+		if (earlier != null) {
+			LOGGER.debug("Replaying product for Idempotency-Key {}", idempotencyKey);
+			return awaitEarlier(earlier);
+		}
+
+		try {
+			String productId = publishProduct(productRestModel, idempotencyKey);
+			pending.complete(productId);
+			return productId;
+		} catch (RuntimeException e) {
+			// failed keys leave the cache, the client may retry with the same key
+			pending.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private String publishProduct(CreateProductRestModel productRestModel, String messageId) {
 //
 //		What this implies in Kafka
 //		Partitioning
@@ -41,45 +107,20 @@ public class ProductServiceImpl implements ProductService {
 
 		String productId = UUID.randomUUID().toString();
 
-		// TODO: Persist Product Details into database table before publishing an Event
-
-
-		// filling the event pojo
-		ProductCreatedEvent productCreatedEvent = ProductCreatedEvent.builder()
-				.productId(productId)
-				.price(productRestModel.getPrice())
-				.title(productRestModel.getTitle())
-				.quantity(productRestModel.getQuantity())
-				.build();
+		// Persist Product Details into database table before publishing an Event
+		if (outboxEnabled) {
+			productOutboxWriter.write(List.of(toOutboxMessage(productId, messageId, productRestModel)));
+			return productId;
+		}
 
 
 		try{
-		LOGGER.info("*****Before publishing a ProductCreatedEvent " + productCreatedEvent.toString());
-
 		// Adding ProductRecord to add headers in kafka message
-		ProducerRecord<String,ProductCreatedEvent> producerRecord = new ProducerRecord(
-				"product-created-events-topic",
-				productId,
-				productCreatedEvent
-		);
-//		producerRecord.headers().add("messageId",productId.toString().getBytes());
-			// sending same id for duplicate messages
-		producerRecord.headers().add("messageId","1".getBytes());
-
-		LOGGER.info(producerRecord.toString());
-
-
-		SendResult<String, ProductCreatedEvent> result =
-				kafkaTemplate.send(producerRecord).get();
+		ProducerRecord<String,ProductCreatedEvent> producerRecord = buildProducerRecord(productId, messageId, productRestModel);
 
-		LOGGER.info("Partition: {}, Topic: {}, Offset: {}", result.getRecordMetadata().partition(),
-				result.getRecordMetadata().topic(), result.getRecordMetadata().offset());
+		SendResult<String, ProductCreatedEvent> result = publish(producerRecord).get();
 
-		LOGGER.info("Partition: " + result.getRecordMetadata().partition());
-		LOGGER.info("Topic: " + result.getRecordMetadata().topic());
-		LOGGER.info("Offset: " + result.getRecordMetadata().offset());
-
-		LOGGER.info("***** Returning product id");
+		logPublished(result);
 	} catch (Exception e) {
 		LOGGER.error("*****Failed to publish ProductCreatedEvent: {}", e.getMessage(), e);
 		throw new EventPublishException("*****Could not publish product event", e); // custom exception
@@ -90,45 +131,251 @@ public class ProductServiceImpl implements ProductService {
 
 
 	// Asynchronous
-//	public String createProduct(CreateProductRestModel productRestModel) {
-//
-//		String productId = UUID.randomUUID().toString();
-//
-//		// TODO: Persist Product Details into database table before publishing an Event
-//
-//
-//		// filling the event pojo
-//		ProductCreatedEvent productCreatedEvent = ProductCreatedEvent.builder()
-//				.productId(productId)
-//				.price(productRestModel.getPrice())
-//				.title(productRestModel.getTitle())
-//				.quantity(productRestModel.getQuantity())
-//				.build();
-//
-//
-//		try {
-//			LOGGER.info("***** Before publishing a ProductCreatedEvent");
-//
-//			CompletableFuture<SendResult<String, ProductCreatedEvent>> future =
-//					kafkaTemplate.send("product-created-events-topic", productId, productCreatedEvent);
-//
-//			future.whenComplete((result, exception) -> {
-//				if (exception != null) {
-//					LOGGER.error("Message send failed", exception); // ✅ log stack trace
-//				} else {
-//					LOGGER.info("** Message sent successfully: {}", result.getRecordMetadata());
-//				}
-//			});
-//
-//			LOGGER.info("***** Returning product id");
-//
-//		} catch (Exception e) {
-//			LOGGER.error("***** Failed to publish ProductCreatedEvent", e);
-//			throw new EventPublishException("***** Could not publish product event", e);
-//		}
-//
-//		return productId;
-//	}
+	// The request thread only hands the record to the producer; the returned future is completed from the
+	// send callback. A fixed pool of permits bounds the number of in-flight publishes so a slow broker
+	// rejects new requests straight away instead of piling them up behind the producer buffer.
+	@Override
+	public CompletableFuture<String> createProductAsync(CreateProductRestModel productRestModel) {
+		return createProductAsync(productRestModel, null);
+	}
+
+	@Override
+	public CompletableFuture<String> createProductAsync(CreateProductRestModel productRestModel, String idempotencyKey) {
+		if (idempotencyKey == null || idempotencyKey.isBlank()) {
+			return publishProductAsync(productRestModel, null);
+		}
+
+		CompletableFuture<String> pending = new CompletableFuture<>();
+		CompletableFuture<String> earlier = idempotencyCache.putIfAbsent(idempotencyKey, pending);
+		if (earlier != null) {
+			LOGGER.debug("Replaying product for Idempotency-Key {}", idempotencyKey);
+			// a copy, so whoever gets it cannot complete the cached future
+			return earlier.copy();
+		}
+
+		try {
+			CompletableFuture<String> result = publishProductAsync(productRestModel, idempotencyKey);
+			result.whenComplete((productId, exception) -> {
+				if (exception != null) {
+					pending.completeExceptionally(exception);
+				} else {
+					pending.complete(productId);
+				}
+			});
+			return result;
+		} catch (RuntimeException e) {
+			pending.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private CompletableFuture<String> publishProductAsync(CreateProductRestModel productRestModel, String messageId) {
+
+		if (outboxEnabled) {
+			// nothing to wait for, the outbox row is the publish
+			return CompletableFuture.completedFuture(publishProduct(productRestModel, messageId));
+		}
 
+		if (!inFlightPermits.tryAcquire()) {
+			throw new PublishCapacityExceededException("*****Too many product events in flight, try again later");
+		}
+
+		String productId = UUID.randomUUID().toString();
+		ProducerRecord<String, ProductCreatedEvent> producerRecord = buildProducerRecord(productId, messageId, productRestModel);
+
+		CompletableFuture<String> result = new CompletableFuture<>();
+		try {
+			publish(producerRecord).whenComplete((sendResult, exception) -> {
+				inFlightPermits.release();
+				if (exception != null) {
+					Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+							? exception.getCause() : exception;
+					LOGGER.error("*****Failed to publish ProductCreatedEvent: {}", cause.getMessage(), cause);
+					result.completeExceptionally(new EventPublishException("*****Could not publish product event", cause));
+				} else {
+					logPublished(sendResult);
+					result.complete(productId);
+				}
+			});
+		} catch (Exception e) {
+			// send() itself can fail before a future exists (serialization, metadata or buffer timeouts)
+			inFlightPermits.release();
+			LOGGER.error("*****Failed to publish ProductCreatedEvent: {}", e.getMessage(), e);
+			throw new EventPublishException("*****Could not publish product event", e);
+		}
+
+		return result;
+	}
+
+	// Bulk
+	// Every record is handed to the producer without waiting for the previous ack, so the producer can batch
+	// them per partition. Only a bounded window of sends is kept around: when it is full the oldest send is
+	// awaited and its result written out, so memory stays flat no matter how many products are streamed in.
+	@Override
+	public void createProducts(Iterator<CreateProductRestModel> productRestModels, Consumer<BulkProductResult> results) {
+
+		if (outboxEnabled) {
+			createProductsInOutbox(productRestModels, results);
+			return;
+		}
+
+		Deque<PendingPublish> window = new ArrayDeque<>(bulkWindowSize);
+		long index = 0;
+		try {
+			while (productRestModels.hasNext()) {
+				CreateProductRestModel productRestModel = productRestModels.next();
+				String productId = UUID.randomUUID().toString();
+
+				CompletableFuture<SendResult<String, ProductCreatedEvent>> future;
+				try {
+					future = publish(buildProducerRecord(productId, null, productRestModel));
+				} catch (Exception e) {
+					future = CompletableFuture.failedFuture(e);
+				}
+				window.add(new PendingPublish(index++, productId, future));
+
+				if (window.size() >= bulkWindowSize) {
+					results.accept(awaitResult(window.poll()));
+				}
+			}
+		} finally {
+			// whatever happens to the input, report the sends that are already out
+			while (!window.isEmpty()) {
+				results.accept(awaitResult(window.poll()));
+			}
+		}
+	}
+
+	// one transaction per window of products, Hibernate batches the inserts of each window
+	private void createProductsInOutbox(Iterator<CreateProductRestModel> productRestModels,
+										Consumer<BulkProductResult> results) {
+		List<OutboxMessage> window = new ArrayList<>(bulkWindowSize);
+		long index = 0;
+		try {
+			while (productRestModels.hasNext()) {
+				window.add(toOutboxMessage(UUID.randomUUID().toString(), null, productRestModels.next()));
+				if (window.size() >= bulkWindowSize) {
+					index = writeOutboxWindow(window, index, results);
+				}
+			}
+		} finally {
+			if (!window.isEmpty()) {
+				writeOutboxWindow(window, index, results);
+			}
+		}
+	}
+
+	private long writeOutboxWindow(List<OutboxMessage> window, long index, Consumer<BulkProductResult> results) {
+		String error = null;
+		try {
+			productOutboxWriter.write(window);
+		} catch (Exception e) {
+			LOGGER.error("*****Failed to store {} products in the outbox: {}", window.size(), e.getMessage());
+			error = e.getMessage();
+		}
+		for (OutboxMessage message : window) {
+			results.accept(BulkProductResult.builder()
+					.index(index++)
+					.productId(message.event().getProductId())
+					.error(error)
+					.build());
+		}
+		window.clear();
+		return index;
+	}
+
+	private BulkProductResult awaitResult(PendingPublish pending) {
+		try {
+			RecordMetadata metadata = pending.future().get().getRecordMetadata();
+			return BulkProductResult.builder()
+					.index(pending.index())
+					.productId(pending.productId())
+					.partition(metadata.partition())
+					.offset(metadata.offset())
+					.build();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EventPublishException("*****Interrupted while publishing product events", e);
+		} catch (Exception e) {
+			Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+			LOGGER.error("*****Failed to publish ProductCreatedEvent {}: {}", pending.productId(), cause.getMessage());
+			return BulkProductResult.builder()
+					.index(pending.index())
+					.productId(pending.productId())
+					.error(cause.getMessage())
+					.build();
+		}
+	}
+
+	// every send goes through here so latency, outcome and size are recorded from the producer callback,
+	// the returned future only completes once they are
+	private CompletableFuture<SendResult<String, ProductCreatedEvent>> publish(
+			ProducerRecord<String, ProductCreatedEvent> producerRecord) {
+		long start = publishMetrics.start();
+		try {
+			return kafkaTemplate.send(producerRecord).whenComplete((sendResult, exception) ->
+					publishMetrics.record(producerRecord.topic(), start,
+							sendResult == null ? null : sendResult.getRecordMetadata(), exception));
+		} catch (RuntimeException e) {
+			publishMetrics.record(producerRecord.topic(), start, null, e);
+			throw e;
+		}
+	}
+
+	// one line per kafka.publish.log-sample-rate publishes, the meters carry the full picture
+	private void logPublished(SendResult<String, ProductCreatedEvent> sendResult) {
+		if (LOGGER.isDebugEnabled() && publishMetrics.sampled()) {
+			RecordMetadata metadata = sendResult.getRecordMetadata();
+			LOGGER.debug("Published ProductCreatedEvent {} Partition: {}, Topic: {}, Offset: {}",
+					sendResult.getProducerRecord().key(), metadata.partition(), metadata.topic(), metadata.offset());
+		}
+	}
+
+	private record PendingPublish(long index, String productId,
+								  CompletableFuture<SendResult<String, ProductCreatedEvent>> future) {
+	}
+
+	private static String awaitEarlier(CompletableFuture<String> earlier) {
+		try {
+			return earlier.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	private ProducerRecord<String, ProductCreatedEvent> buildProducerRecord(String productId, String messageId,
+																			CreateProductRestModel productRestModel) {
+		// Adding ProductRecord to add headers in kafka message
+		ProducerRecord<String, ProductCreatedEvent> producerRecord = new ProducerRecord<>(
+				PRODUCT_CREATED_EVENTS_TOPIC,
+				productId,
+				buildEvent(productId, productRestModel)
+		);
+		producerRecord.headers().add("messageId", messageId(productId, messageId).getBytes());
+		return producerRecord;
+	}
+
+	private OutboxMessage toOutboxMessage(String productId, String messageId, CreateProductRestModel productRestModel) {
+		return new OutboxMessage(messageId(productId, messageId), buildEvent(productId, productRestModel));
+	}
+
+	private static ProductCreatedEvent buildEvent(String productId, CreateProductRestModel productRestModel) {
+		// filling the event pojo
+		return ProductCreatedEvent.builder()
+				.productId(productId)
+				.price(productRestModel.getPrice())
+				.title(productRestModel.getTitle())
+				.quantity(productRestModel.getQuantity())
+				.build();
+	}
+
+	// the client's Idempotency-Key when there is one, so consumers dedupe client retries too, otherwise the
+	// product id, which is unique per product and stable across producer retries
+	private static String messageId(String productId, String idempotencyKey) {
+		return idempotencyKey != null ? idempotencyKey : productId;
+	}
 
 }
@@ -0,0 +1,201 @@
+package com.v.productsmicroservice;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.core.ProductCreatedEvent;
+import com.v.productsmicroservice.dto.CreateProductRestModel;
+import com.v.productsmicroservice.entity.OutboxEventEntity;
+import com.v.productsmicroservice.entity.ProductEntity;
+import com.v.productsmicroservice.outbox.OutboxMessage;
+import com.v.productsmicroservice.outbox.OutboxRelay;
+import com.v.productsmicroservice.outbox.ProductOutboxWriter;
+import com.v.productsmicroservice.repository.OutboxEventRepository;
+import com.v.productsmicroservice.service.ProductService;
+import jakarta.persistence.EntityManager;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest()
+@DirtiesContext
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ActiveProfiles("test")
+@EmbeddedKafka(partitions=3, count=3, controlledShutdown=true)
+@TestPropertySource(properties = {
+		"products.outbox.enabled=true",
+		// the scheduled run only happens at startup, the tests call relay() themselves
+		"products.outbox.relay.interval-ms=3600000"
+})
+class OutboxRelayIntegrationTest {
+
+	private static final String TOPIC = "product-created-events-topic";
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductOutboxWriter productOutboxWriter;
+
+	@Autowired
+	private OutboxRelay outboxRelay;
+
+	@Autowired
+	private OutboxEventRepository outboxEventRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+	private KafkaMessageListenerContainer<String, ProductCreatedEvent> container;
+	private BlockingQueue<ConsumerRecord<String, ProductCreatedEvent>> records;
+
+	@BeforeAll
+	void setUp() {
+		DefaultKafkaConsumerFactory<String, Object> consumerFactory = new DefaultKafkaConsumerFactory<>(Map.of(
+				ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, embeddedKafkaBroker.getBrokersAsString(),
+				ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+				ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
+				ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class,
+				ConsumerConfig.GROUP_ID_CONFIG, "outbox-relay-test",
+				JsonDeserializer.TRUSTED_PACKAGES, "com.v.*",
+				ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"));
+		container = new KafkaMessageListenerContainer<>(consumerFactory, new ContainerProperties(TOPIC));
+		records = new LinkedBlockingQueue<>();
+		container.setupMessageListener((MessageListener<String, ProductCreatedEvent>) records::add);
+		container.start();
+		ContainerTestUtils.waitForAssignment(container, embeddedKafkaBroker.getPartitionsPerTopic());
+	}
+
+	@BeforeEach
+	void clearOutbox() {
+		outboxEventRepository.deleteAll();
+		records.clear();
+	}
+
+	@Test
+	void testCreateProduct_whenOutboxEnabled_storesProductAndEventAndRelayPublishesIt() throws Exception {
+
+		// Arrange
+		CreateProductRestModel createProductRestModel = new CreateProductRestModel();
+		createProductRestModel.setTitle("MacBook Air");
+		createProductRestModel.setPrice(new BigDecimal(1200));
+		createProductRestModel.setQuantity(4);
+
+		// Act
+		String productId = productService.createProduct(createProductRestModel);
+
+		// Assert
+		// stored, nothing published yet
+		assertNotNull(entityManager.find(ProductEntity.class, productId));
+		OutboxEventEntity outboxEvent = outboxEventRepository.findAll().get(0);
+		assertEquals(productId, outboxEvent.getAggregateId());
+		assertNull(outboxEvent.getSentAt());
+		assertNull(records.poll(500, TimeUnit.MILLISECONDS));
+
+		outboxRelay.relay();
+
+		ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		assertEquals(productId, message.key());
+		assertEquals("MacBook Air", message.value().getTitle());
+		assertEquals(outboxEvent.getMessageId(), new String(message.headers().lastHeader("messageId").value()));
+		assertNotNull(outboxEventRepository.findById(outboxEvent.getId()).orElseThrow().getSentAt());
+	}
+
+	@Test
+	void testWrite_whenProductInsertFails_storesNoOutboxRow() {
+
+		// Arrange
+		// the same product twice, the second insert fails when the transaction commits
+		ProductCreatedEvent event = new ProductCreatedEvent(UUID.randomUUID().toString(), "Kindle",
+				new BigDecimal(120), 1);
+		List<OutboxMessage> messages = List.of(new OutboxMessage(UUID.randomUUID().toString(), event),
+				new OutboxMessage(UUID.randomUUID().toString(), event));
+
+		// Act
+		assertThrows(RuntimeException.class, () -> productOutboxWriter.write(messages));
+
+		// Assert
+		assertNull(entityManager.find(ProductEntity.class, event.getProductId()));
+		assertEquals(0, outboxEventRepository.count());
+	}
+
+	@Test
+	void testRelay_whenSendFails_leavesThatRowAndTheRestOfTheBatchPending() throws Exception {
+
+		// Arrange
+		// the second row cannot be read back, its send fails before it reaches the producer
+		OutboxEventEntity first = outboxEventRepository.save(outboxEvent(json(UUID.randomUUID().toString())));
+		OutboxEventEntity broken = outboxEventRepository.save(outboxEvent("not json"));
+		OutboxEventEntity third = outboxEventRepository.save(outboxEvent(json(UUID.randomUUID().toString())));
+
+		// Act
+		outboxRelay.relay();
+
+		// Assert
+		ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		assertEquals(first.getAggregateId(), message.key());
+		assertNull(records.poll(1000, TimeUnit.MILLISECONDS));
+
+		assertNotNull(outboxEventRepository.findById(first.getId()).orElseThrow().getSentAt());
+		assertNull(outboxEventRepository.findById(broken.getId()).orElseThrow().getSentAt());
+		assertNull(outboxEventRepository.findById(third.getId()).orElseThrow().getSentAt());
+	}
+
+	private OutboxEventEntity outboxEvent(String payload) {
+		return OutboxEventEntity.builder()
+				.topic(TOPIC)
+				.aggregateId(UUID.randomUUID().toString())
+				.messageId(UUID.randomUUID().toString())
+				.payload(payload)
+				.createdAt(Instant.now())
+				.build();
+	}
+
+	private String json(String productId) throws Exception {
+		return objectMapper.writeValueAsString(new ProductCreatedEvent(productId, "Kindle", new BigDecimal(120), 1));
+	}
+
+	@AfterAll
+	void tearDown() {
+		container.stop();
+	}
+}
@@ -1,14 +1,22 @@
 package com.v.productsmicroservice;
 
 import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.v.core.ProductCreatedEvent;
 import com.v.productsmicroservice.dto.CreateProductRestModel;
+import com.v.productsmicroservice.requestresponse.BulkProductResult;
 import com.v.productsmicroservice.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -17,8 +25,10 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.KafkaMessageListenerContainer;
@@ -30,11 +40,20 @@ import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.kafka.test.utils.ContainerTestUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest()
+@AutoConfigureMockMvc
 @DirtiesContext
 @TestInstance(TestInstance.Lifecycle.PER_CLASS) //same instance for each method
 @ActiveProfiles("test") // application-test.properties
@@ -51,6 +70,15 @@ class ProductsMicroserviceApplicationTests {
 	@Autowired
 	Environment environment;
 
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
 	private KafkaMessageListenerContainer<String, ProductCreatedEvent> container;
 	private BlockingQueue<ConsumerRecord<String, ProductCreatedEvent>> records;
 
@@ -105,6 +133,184 @@ class ProductsMicroserviceApplicationTests {
 		assertEquals(createProductRestModel.getPrice(), productCreatedEvent.getPrice());
 	}
 
+	@Test
+	void testCreateProductAsync_whenGivenValidProductDetails_completesWithPublishedProductId() throws Exception {
+
+		// Arrange
+		CreateProductRestModel createProductRestModel = new CreateProductRestModel();
+		createProductRestModel.setPrice(new BigDecimal(450));
+		createProductRestModel.setQuantity(2);
+		createProductRestModel.setTitle("iPad");
+
+		// Act
+		// future completes from the send callback once the broker acknowledged the record
+		String productId = productService.createProductAsync(createProductRestModel).get(10, TimeUnit.SECONDS);
+
+		// Assert
+		ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		assertEquals(productId, message.key());
+		assertEquals(productId, message.value().getProductId());
+		assertEquals(createProductRestModel.getTitle(), message.value().getTitle());
+
+		// latency is recorded per topic and partition from the send callback
+		Timer latency = meterRegistry.find("kafka.publish.latency")
+				.tags("topic", message.topic(), "partition", String.valueOf(message.partition()), "outcome", "success")
+				.timer();
+		assertNotNull(latency);
+		assertTrue(latency.count() > 0);
+	}
+	@Test
+	void testCreateProduct_whenIdempotencyKeyIsRepeated_returnsSameProductIdAndPublishesOnce() throws Exception {
+
+		// Arrange
+		String idempotencyKey = UUID.randomUUID().toString();
+		String body = """
+				{"title":"Galaxy S24","price":800,"quantity":2}
+				""";
+
+		// Act
+		// the client retries the same request, e.g. after a timeout
+		String firstProductId = createWithIdempotencyKey(body, idempotencyKey);
+		String retriedProductId = createWithIdempotencyKey(body, idempotencyKey);
+
+		// Assert
+		assertEquals(firstProductId, retriedProductId);
+
+		ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		assertEquals(firstProductId, message.key());
+		// the key travels as messageId so consumers dedupe on it
+		assertEquals(idempotencyKey, new String(message.headers().lastHeader("messageId").value()));
+		assertNull(records.poll(1000, TimeUnit.MILLISECONDS));
+	}
+
+	private String createWithIdempotencyKey(String body, String idempotencyKey) throws Exception {
+		MvcResult pending = mockMvc.perform(post("/products/create")
+						.contentType(MediaType.APPLICATION_JSON)
+						.header("Idempotency-Key", idempotencyKey)
+						.content(body))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mockMvc.perform(asyncDispatch(pending))
+				.andExpect(status().isCreated())
+				.andReturn();
+		return objectMapper.readTree(result.getResponse().getContentAsString()).get("data").asText();
+	}
+
+	@Test
+	void testCreateProducts_whenGivenNdjsonBody_streamsOneResultPerProduct() throws Exception {
+
+		// Arrange
+		String body = """
+				{"title":"Pixel 8","price":700,"quantity":1}
+				{"title":"Pixel 8 Pro","price":900,"quantity":3}
+				{"title":"Pixel Watch","price":350,"quantity":5}
+				""";
+
+		// Act
+		MvcResult result = mockMvc.perform(post("/products/bulk")
+						.contentType(MediaType.APPLICATION_NDJSON)
+						.content(body))
+				.andExpect(status().isOk())
+				.andReturn();
+
+		// Assert
+		// one result line per product, in the order they were sent
+		List<String> lines = result.getResponse().getContentAsString().lines().toList();
+		assertEquals(3, lines.size());
+		Set<String> productIds = new HashSet<>();
+		for (int i = 0; i < lines.size(); i++) {
+			BulkProductResult bulkResult = objectMapper.readValue(lines.get(i), BulkProductResult.class);
+			assertEquals(i, bulkResult.getIndex());
+			assertNull(bulkResult.getError());
+			assertNotNull(bulkResult.getOffset());
+			productIds.add(bulkResult.getProductId());
+		}
+
+		Set<String> publishedKeys = new HashSet<>();
+		for (int i = 0; i < 3; i++) {
+			ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			publishedKeys.add(message.key());
+		}
+		assertEquals(productIds, publishedKeys);
+	}
+
+	@Test
+	void testCreateProducts_whenGivenJsonArrayBody_streamsOneResultPerProduct() throws Exception {
+
+		// Arrange
+		String body = """
+				[{"title":"ThinkPad X1","price":1500,"quantity":2},
+				 {"title":"ThinkPad T14","price":1100,"quantity":4}]
+				""";
+
+		// Act
+		MvcResult result = mockMvc.perform(post("/products/bulk")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(body))
+				.andExpect(status().isOk())
+				.andReturn();
+
+		// Assert
+		// the array is read element by element, the answer is NDJSON all the same
+		List<String> lines = result.getResponse().getContentAsString().lines().toList();
+		assertEquals(2, lines.size());
+		Set<String> productIds = new HashSet<>();
+		for (int i = 0; i < lines.size(); i++) {
+			BulkProductResult bulkResult = objectMapper.readValue(lines.get(i), BulkProductResult.class);
+			assertEquals(i, bulkResult.getIndex());
+			assertNull(bulkResult.getError());
+			assertNotNull(bulkResult.getOffset());
+			productIds.add(bulkResult.getProductId());
+		}
+
+		Set<String> publishedKeys = new HashSet<>();
+		for (int i = 0; i < 2; i++) {
+			ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			publishedKeys.add(message.key());
+		}
+		assertEquals(productIds, publishedKeys);
+	}
+
+	@Test
+	void testCreateProducts_whenAnItemIsMalformed_reportsTheItemsBeforeItAndStops() throws Exception {
+
+		// Arrange
+		String body = """
+				{"title":"Echo Dot","price":50,"quantity":10}
+				{"title":"Echo Show","price":}
+				{"title":"Echo Studio","price":200,"quantity":1}
+				""";
+
+		// Act
+		MvcResult result = mockMvc.perform(post("/products/bulk")
+						.contentType(MediaType.APPLICATION_NDJSON)
+						.content(body))
+				.andExpect(status().isOk())
+				.andReturn();
+
+		// Assert
+		// the status went out with the first line, the parse error is the last line of the stream
+		List<String> lines = result.getResponse().getContentAsString().lines().toList();
+		assertEquals(2, lines.size());
+		BulkProductResult published = objectMapper.readValue(lines.get(0), BulkProductResult.class);
+		assertEquals(0, published.getIndex());
+		assertNotNull(published.getOffset());
+		assertNull(published.getError());
+		BulkProductResult malformed = objectMapper.readValue(lines.get(1), BulkProductResult.class);
+		assertNull(malformed.getIndex());
+		assertNull(malformed.getProductId());
+		assertTrue(malformed.getError().startsWith("Malformed input: "), malformed.getError());
+
+		// nothing after the malformed item is published
+		ConsumerRecord<String, ProductCreatedEvent> message = records.poll(3000, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		assertEquals(published.getProductId(), message.key());
+		assertNull(records.poll(1000, TimeUnit.MILLISECONDS));
+	}
 
 	// kafka consumer configuration setting up this method will return map of configuration prop
 	// now we have kafka consumer configuration we can use them to listen to a specific topic -->line56
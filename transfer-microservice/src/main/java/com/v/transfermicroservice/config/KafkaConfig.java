@@ -1,25 +1,39 @@
 package com.v.transfermicroservice.config;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.v.core.kafka.ConsistentHashPartitioner;
+import com.v.core.kafka.EventKeyStrategy;
+import com.v.core.kafka.PooledTransactionalProducerFactory;
+import com.v.core.kafka.ProducerProfile;
+import com.v.core.kafka.PublishMetrics;
+import com.v.core.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManagerFactory;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.config.TopicBuilder;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class KafkaConfig {
 
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
     @Value("withdraw-money-topic")
     private String withdrawTopicName;
 
@@ -41,8 +55,9 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.properties.delivery.timeout.ms}")
     private String deliveryTimeout;
 
-    @Value("${spring.kafka.producer.properties.linger.ms}")
-    private String linger;
+    // linger, batch size, compression, buffer memory and in-flight requests come from the profile
+    @Value("${kafka.producer.profile:latency}")
+    private String producerProfile;
 
     @Value("${spring.kafka.producer.properties.request.timeout.ms}")
     private String requestTimeout;
@@ -50,12 +65,12 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.properties.enable.idempotence}")
     private boolean idempotence;
 
-    @Value("${spring.kafka.producer.properties.max.in.flight.requests.per.connection}")
-    private int inflightRequests;
-
     @Value("${spring.kafka.producer.transaction-id-prefix}")
     private String transactionalIdPrefix;
 
+    @Value("${kafka.producer.consistent-hash.virtual-nodes:128}")
+    private int virtualNodes;
+
     public Map<String, Object> producerConfigs() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -63,21 +78,59 @@ public class KafkaConfig {
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializer);
         props.put(ProducerConfig.ACKS_CONFIG, acks);
         props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeout);
-        props.put(ProducerConfig.LINGER_MS_CONFIG, linger);
         props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeout);
 
         props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
-        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, inflightRequests);
 
         // adding it here
         props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalIdPrefix);
-        return props;
+
+        // when partitions are added most accounts stay on their partition; about 1/n of them move, and their events
+        // from before and after the change may be read out of order, see ConsistentHashPartitioner.
+        // The virtual nodes setting is not a Kafka config, but the partitioner reads it from the producer configs,
+        // which marks it used: the producer does not log it as "supplied but not used"
+        props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, ConsistentHashPartitioner.class);
+        props.put(ConsistentHashPartitioner.VIRTUAL_NODES_CONFIG, virtualNodes);
+        return ProducerProfile.from(producerProfile).applyTo(props);
     }
 
 
+    // every transaction (sync transfer, async publish, group commit, batch) borrows one of pool.size producers and
+    // waits up to pool.max-wait-ms when all are busy; transactional ids are the prefix plus 0..size-1
     @Bean
-    ProducerFactory<String, Object> producerFactory() {
-        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    PooledTransactionalProducerFactory<String, Object> producerFactory(MeterRegistry meterRegistry,
+            @Value("${kafka.producer.pool.size:16}") int poolSize,
+            @Value("${kafka.producer.pool.max-wait-ms:5000}") long maxWaitMs) {
+        return new PooledTransactionalProducerFactory<>(producerConfigs(), poolSize, Duration.ofMillis(maxWaitMs),
+                meterRegistry);
+    }
+
+    // opens the pool's producers before the first transfers need them, off the startup thread so a broker that is
+    // not up yet does not hold up the application
+    @EventListener(ApplicationStartedEvent.class)
+    void prewarmProducers(ApplicationStartedEvent event) {
+        if (!event.getApplicationContext().getEnvironment()
+                .getProperty("kafka.producer.pool.prewarm", Boolean.class, true)) {
+            return;
+        }
+        PooledTransactionalProducerFactory<?, ?> producerFactory =
+                event.getApplicationContext().getBean(PooledTransactionalProducerFactory.class);
+        Thread prewarm = new Thread(() -> {
+            try {
+                LOGGER.info("Opened {} transactional producers", producerFactory.prewarm());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not prewarm the transactional producers: {}", e.getMessage());
+            }
+        }, "producer-prewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
+    }
+
+    // withdrawals keyed by sender and deposits by recipient, so all events of an account reach one consumer thread
+    // in order; transfer.events.key-strategy=none sends them without a key
+    @Bean
+    EventKeyStrategy eventKeyStrategy(@Value("${transfer.events.key-strategy:account}") String keyStrategy) {
+        return EventKeyStrategy.from(keyStrategy);
     }
 
     @Bean
@@ -105,8 +158,30 @@ public class KafkaConfig {
     }
 
     @Bean
-    RestTemplate getRestTemplate() {
-        return new RestTemplate();
+    PublishMetrics publishMetrics(MeterRegistry meterRegistry,
+                                  @Value("${kafka.publish.log-sample-rate:1000}") long logSampleRate) {
+        return new PublishMetrics(meterRegistry, logSampleRate);
+    }
+
+    // without timeouts a hung remote service holds the caller, in async mode a worker past the processing timeout
+    @Bean
+    RestTemplate getRestTemplate(@Value("${transfer.remote.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                 @Value("${transfer.remote.read-timeout-ms:5000}") long readTimeoutMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofMillis(connectTimeoutMs));
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(requestFactory);
+    }
+
+    // transfers fail fast while the remote service is down instead of each one waiting on it inside a transaction
+    @Bean
+    CircuitBreaker remoteServiceCircuitBreaker(MeterRegistry meterRegistry,
+            @Value("${transfer.remote.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${transfer.remote.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${transfer.remote.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${transfer.remote.circuit-breaker.open-duration-ms:30000}") long openDurationMs) {
+        return new CircuitBreaker("remote-service", failureRateThreshold, slidingWindowSize, minimumCalls,
+                Duration.ofMillis(openDurationMs), meterRegistry);
     }
 
 }
@@ -1,7 +1,21 @@
 package com.v.transfermicroservice.controller;
 
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.v.transfermicroservice.entity.TransferEntity;
+import com.v.transfermicroservice.error.InvalidTransferBatchException;
 import com.v.transfermicroservice.model.TransferRestModel;
+import com.v.transfermicroservice.repository.TransferRepository;
+import com.v.transfermicroservice.service.TransferGroupCommitter;
 import com.v.transfermicroservice.service.TransferService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,13 +28,51 @@ import org.springframework.web.bind.annotation.RequestMapping;
 public class TransfersController {
     private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
     private TransferService transferService;
+    private TransferRepository transferRepository;
+    private boolean async;
+    // only there with transfer.processing.mode=group-commit
+    private TransferGroupCommitter groupCommitter;
 
-    public TransfersController(TransferService transferService) {
+    public TransfersController(TransferService transferService, TransferRepository transferRepository,
+                               ObjectProvider<TransferGroupCommitter> groupCommitter,
+                               @Value("${transfer.processing.mode:sync}") String processingMode) {
         this.transferService = transferService;
+        this.transferRepository = transferRepository;
+        this.groupCommitter = groupCommitter.getIfAvailable();
+        this.async = "async".equals(processingMode);
     }
 
+    // sync: 200 with true once verified and published; async: 202 with the transfer id once stored;
+    // group-commit: 200 with true once the group holding it commits, failures surface as in sync mode. The group
+    // commit future is handed to Spring MVC, the request thread is not held while the group fills and commits
     @PostMapping()
-    public boolean transfer(@RequestBody TransferRestModel transferRestModel) {
-        return transferService.transfer(transferRestModel);
+    public CompletableFuture<ResponseEntity<Object>> transfer(@RequestBody TransferRestModel transferRestModel) {
+        if (groupCommitter != null) {
+            return groupCommitter.submit(transferRestModel).thenApply(ResponseEntity::ok);
+        }
+        if (!async) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok(transferService.transfer(transferRestModel)));
+        }
+        String transferId = transferService.accept(transferRestModel);
+        return CompletableFuture.completedFuture(ResponseEntity.accepted()
+                .location(URI.create("/transfers/" + transferId))
+                .body(Map.of("transferId", transferId)));
+    }
+
+    // one transaction for the whole list, 400 with the reason when it is empty or larger than
+    // transfer.batch.max-size
+    @PostMapping("/batch")
+    public ResponseEntity<Object> transferBatch(@RequestBody List<TransferRestModel> transferRestModels) {
+        try {
+            return ResponseEntity.ok(Map.of("transferIds", transferService.transferBatch(transferRestModels)));
+        } catch (InvalidTransferBatchException e) {
+            LOGGER.warn("Rejected transfer batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{transferId}")
+    public ResponseEntity<TransferEntity> get(@PathVariable String transferId) {
+        return ResponseEntity.of(transferRepository.findById(transferId));
     }
 }
@@ -3,15 +3,25 @@ package com.v.transfermicroservice.entity;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.time.Instant;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
 
+// Persistable: the id is assigned before saving, without isNew() save/saveAll would merge, one SELECT per entity
+// and no JDBC batching
 @Entity
 @Table(name="transfers")
-public class TransferEntity {
+public class TransferEntity implements Persistable<String> {
 
 
 	@Id
@@ -27,6 +37,29 @@ public class TransferEntity {
     @Column(nullable = false)
     private BigDecimal amount;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransferStatus status;
+
+    // when status last changed, a PROCESSING claim older than the processing timeout is given up
+    @Column(nullable = false)
+    private Instant statusChangedAt;
+
+    // async mode: verifications and publishes that failed for a reason that may go away, the transfer is given up
+    // (FAILED) after transfer.async.max-retries of them
+    @Column(nullable = false)
+    private int attempts;
+
+    // async mode: a PENDING transfer put back after a failed attempt is not claimed again before this
+    private Instant nextAttemptAt;
+
+    // async mode: set by each PENDING -> PROCESSING claim, a worker only moves the transfer on while it still holds
+    // the claim, not after it was swept back to PENDING and claimed by another one
+    private String claimId;
+
+    @Transient
+    private boolean isNew = true;
+
     public TransferEntity() {
     }
 
@@ -69,5 +102,44 @@ public class TransferEntity {
         this.amount = amount;
     }
 
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferStatus status) {
+        this.status = status;
+        this.statusChangedAt = Instant.now();
+    }
+
+    public Instant getStatusChangedAt() {
+        return statusChangedAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return transferId;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
 }
 
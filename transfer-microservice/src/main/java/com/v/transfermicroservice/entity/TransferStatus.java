@@ -0,0 +1,12 @@
+package com.v.transfermicroservice.entity;
+
+// PENDING: accepted, waiting for the async pipeline (transfer.processing.mode=async)
+// PROCESSING: claimed by a poller, back to PENDING when the remote service is unavailable or the claim goes stale
+// COMPLETED: verified and both events published; sync transfers are stored with this status
+// FAILED: rejected by the remote service, nothing published
+public enum TransferStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
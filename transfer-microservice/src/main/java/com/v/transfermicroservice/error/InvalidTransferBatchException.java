@@ -0,0 +1,8 @@
+package com.v.transfermicroservice.error;
+
+// a batch that is empty or larger than transfer.batch.max-size, nothing of it was stored or published
+public class InvalidTransferBatchException extends RuntimeException {
+    public InvalidTransferBatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.v.transfermicroservice.error;
+
+// the remote service answered and turned the transfer down (4xx), retrying it gives the same answer
+public class TransferRejectedException extends RuntimeException {
+    public TransferRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,8 +1,70 @@
 package com.v.transfermicroservice.repository;
 
+import java.time.Instant;
+import java.util.List;
+
 import com.v.transfermicroservice.entity.TransferEntity;
+import com.v.transfermicroservice.entity.TransferStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface TransferRepository extends JpaRepository<TransferEntity, String> {
 
+    // oldest first, so a backlog drains in arrival order; transfers waiting out a retry back off are skipped
+    @Query("select t.transferId from TransferEntity t where t.status = :status "
+            + "and (t.nextAttemptAt is null or t.nextAttemptAt <= :now) order by t.statusChangedAt")
+    List<String> findDueIdsByStatus(@Param("status") TransferStatus status, @Param("now") Instant now,
+                                    Pageable pageable);
+
+    // compare-and-set PENDING -> PROCESSING under a new claim id: 1 when this caller got the claim, 0 when it was
+    // not PENDING any more
+    @Modifying
+    @Transactional("transactionManager")
+    @Query("update TransferEntity t set t.status = com.v.transfermicroservice.entity.TransferStatus.PROCESSING, "
+            + "t.claimId = :claimId, t.statusChangedAt = :now "
+            + "where t.transferId = :transferId "
+            + "and t.status = com.v.transfermicroservice.entity.TransferStatus.PENDING")
+    int claim(@Param("transferId") String transferId, @Param("claimId") String claimId, @Param("now") Instant now);
+
+    // PROCESSING -> to, only while the claim is still the caller's; 0 once it was swept and claimed again
+    @Modifying
+    @Transactional("transactionManager")
+    @Query("update TransferEntity t set t.status = :to, t.statusChangedAt = :now "
+            + "where t.transferId = :transferId and t.claimId = :claimId "
+            + "and t.status = com.v.transfermicroservice.entity.TransferStatus.PROCESSING")
+    int updateClaimedStatus(@Param("transferId") String transferId, @Param("claimId") String claimId,
+                            @Param("to") TransferStatus to, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional("transactionManager")
+    @Query("update TransferEntity t set t.status = :to, t.statusChangedAt = :now "
+            + "where t.status = :from and t.statusChangedAt < :before")
+    int updateStatusChangedBefore(@Param("from") TransferStatus from, @Param("to") TransferStatus to,
+                                  @Param("before") Instant before, @Param("now") Instant now);
+
+    // PROCESSING -> PENDING without an attempt counted, the remote service was not asked
+    @Modifying
+    @Transactional("transactionManager")
+    @Query("update TransferEntity t set t.status = com.v.transfermicroservice.entity.TransferStatus.PENDING, "
+            + "t.statusChangedAt = :now, t.nextAttemptAt = :nextAttemptAt "
+            + "where t.transferId = :transferId and t.claimId = :claimId "
+            + "and t.status = com.v.transfermicroservice.entity.TransferStatus.PROCESSING")
+    int defer(@Param("transferId") String transferId, @Param("claimId") String claimId, @Param("now") Instant now,
+              @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    // PROCESSING -> PENDING after a failed attempt, counted; 0 once the transfer already had maxRetries retries
+    @Modifying
+    @Transactional("transactionManager")
+    @Query("update TransferEntity t set t.status = com.v.transfermicroservice.entity.TransferStatus.PENDING, "
+            + "t.attempts = t.attempts + 1, t.statusChangedAt = :now, t.nextAttemptAt = :nextAttemptAt "
+            + "where t.transferId = :transferId and t.claimId = :claimId "
+            + "and t.status = com.v.transfermicroservice.entity.TransferStatus.PROCESSING "
+            + "and t.attempts < :maxRetries")
+    int retry(@Param("transferId") String transferId, @Param("claimId") String claimId,
+              @Param("maxRetries") int maxRetries, @Param("now") Instant now,
+              @Param("nextAttemptAt") Instant nextAttemptAt);
 }
@@ -0,0 +1,193 @@
+package com.v.transfermicroservice.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.v.core.resilience.CircuitBreakerOpenException;
+import com.v.transfermicroservice.error.TransferRejectedException;
+import com.v.transfermicroservice.entity.TransferStatus;
+import com.v.transfermicroservice.repository.TransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+// transfer.processing.mode=async: the stage after POST /transfers. Every poll-interval-ms PENDING transfers are
+// claimed (PENDING -> PROCESSING, so several instances can poll the same table) and run on the workers: the remote
+// verification without a transaction, then both publishes and COMPLETED in one transaction. At most batch-size claims
+// are in flight, a poll only claims as many as have finished since, so a slow verification never holds up the polls
+// or the stale claim sweep.
+//
+// Rejected by the remote service (TransferRejectedException) -> FAILED. Circuit breaker open -> back to PENDING,
+// claimed again retry-backoff-ms later and not counted as an attempt. Any other failure of the verification (503, other 5xx, I/O error) or a rolled back publish
+// transaction -> back to PENDING, claimed again retry-backoff-ms later; after max-retries of those the transfer is
+// FAILED. A claim left in PROCESSING for processing-timeout-ms (instance died mid-way, or a slow verification) goes
+// back to PENDING as well. Every claim carries its own claim id and all later moves, COMPLETED included, are
+// compare-and-sets on it, so a worker whose claim was swept and taken by another one publishes nothing.
+//
+// Meters: transfer.async.processed{outcome=completed|failed|retried|deferred} and transfer.async.process (verify + publish).
+@Component
+@ConditionalOnProperty(name = "transfer.processing.mode", havingValue = "async")
+public class PendingTransferProcessor {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+	private final TransferService transferService;
+	private final TransferRepository transferRepository;
+	private final Semaphore inFlight;
+	private final Duration processingTimeout;
+	private final int maxRetries;
+	private final Duration retryBackoff;
+	private final ScheduledExecutorService poller;
+	private final ExecutorService workers;
+
+	private final Counter completed;
+	private final Counter failed;
+	private final Counter retried;
+	private final Counter deferred;
+	private final Timer processTimer;
+
+	public PendingTransferProcessor(TransferService transferService, TransferRepository transferRepository,
+									MeterRegistry meterRegistry,
+									@Value("${transfer.async.poll-interval-ms:100}") long pollIntervalMs,
+									@Value("${transfer.async.batch-size:100}") int batchSize,
+									@Value("${transfer.async.workers:8}") int workers,
+									@Value("${transfer.async.processing-timeout-ms:60000}") long processingTimeoutMs,
+									@Value("${transfer.async.max-retries:20}") int maxRetries,
+									@Value("${transfer.async.retry-backoff-ms:1000}") long retryBackoffMs,
+									@Value("${transfer.remote.connect-timeout-ms:2000}") long connectTimeoutMs,
+									@Value("${transfer.remote.read-timeout-ms:5000}") long readTimeoutMs) {
+		// otherwise a verification still waiting on the remote service is swept and claimed a second time
+		if (connectTimeoutMs + readTimeoutMs >= processingTimeoutMs) {
+			throw new IllegalArgumentException("transfer.remote.connect-timeout-ms + transfer.remote.read-timeout-ms "
+					+ "must be below transfer.async.processing-timeout-ms");
+		}
+		this.transferService = transferService;
+		this.transferRepository = transferRepository;
+		this.inFlight = new Semaphore(batchSize);
+		this.processingTimeout = Duration.ofMillis(processingTimeoutMs);
+		this.maxRetries = maxRetries;
+		this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+		this.completed = meterRegistry.counter("transfer.async.processed", "outcome", "completed");
+		this.failed = meterRegistry.counter("transfer.async.processed", "outcome", "failed");
+		this.retried = meterRegistry.counter("transfer.async.processed", "outcome", "retried");
+		this.deferred = meterRegistry.counter("transfer.async.processed", "outcome", "deferred");
+		this.processTimer = meterRegistry.timer("transfer.async.process");
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workers, runnable ->
+				new Thread(runnable, "transfer-worker-" + threadNumber.getAndIncrement()));
+		this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "transfer-poller"));
+		this.poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	private void pollQuietly() {
+		try {
+			poll();
+		} catch (RuntimeException e) {
+			LOGGER.error("Polling pending transfers failed", e);
+		}
+	}
+
+	private void poll() {
+		Instant now = Instant.now();
+		int stale = transferRepository.updateStatusChangedBefore(TransferStatus.PROCESSING, TransferStatus.PENDING,
+				now.minus(processingTimeout), now);
+		if (stale > 0) {
+			LOGGER.warn("{} transfers were left in PROCESSING, back to PENDING", stale);
+		}
+
+		// only the poller takes permits, the workers give them back
+		int free = inFlight.availablePermits();
+		if (free == 0) {
+			return;
+		}
+		for (String transferId : transferRepository.findDueIdsByStatus(TransferStatus.PENDING, now,
+				PageRequest.of(0, free))) {
+			String claimId = UUID.randomUUID().toString();
+			if (transferRepository.claim(transferId, claimId, Instant.now()) == 1) {
+				inFlight.acquireUninterruptibly();
+				CompletableFuture.runAsync(() -> process(transferId, claimId), workers)
+						.whenComplete((ignored, e) -> {
+							inFlight.release();
+							if (e != null) {
+								LOGGER.error("Processing transfer {} failed", transferId, e);
+							}
+						});
+			}
+		}
+	}
+
+	private void process(String transferId, String claimId) {
+		long start = System.nanoTime();
+		try {
+			transferService.verify(transferId);
+		} catch (CircuitBreakerOpenException e) {
+			defer(transferId, claimId);
+			return;
+		} catch (TransferRejectedException e) {
+			LOGGER.error(e.getMessage());
+			fail(transferId, claimId);
+			return;
+		} catch (RuntimeException e) {
+			LOGGER.warn("Transfer {} could not be verified, retrying it: {}", transferId, e.getMessage());
+			retry(transferId, claimId);
+			return;
+		}
+		try {
+			transferService.complete(transferId, claimId);
+			completed.increment();
+			processTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		} catch (RuntimeException e) {
+			LOGGER.error("Publishing transfer {} failed, retrying it", transferId, e);
+			retry(transferId, claimId);
+		}
+	}
+
+	// a circuit breaker rejection is not counted as an attempt, the remote service was not asked; the back off keeps
+	// the open breaker from having the same transfers claimed and put back on every poll
+	private void defer(String transferId, String claimId) {
+		Instant now = Instant.now();
+		if (transferRepository.defer(transferId, claimId, now, now.plus(retryBackoff)) == 1) {
+			deferred.increment();
+		}
+	}
+
+	private void retry(String transferId, String claimId) {
+		Instant now = Instant.now();
+		if (transferRepository.retry(transferId, claimId, maxRetries, now, now.plus(retryBackoff)) == 1) {
+			retried.increment();
+		} else if (transferRepository.updateClaimedStatus(transferId, claimId, TransferStatus.FAILED, now) == 1) {
+			// still ours, so the retries ran out
+			LOGGER.error("Transfer {} failed {} retries, giving up", transferId, maxRetries);
+			failed.increment();
+		}
+	}
+
+	private void fail(String transferId, String claimId) {
+		if (transferRepository.updateClaimedStatus(transferId, claimId, TransferStatus.FAILED, Instant.now()) == 1) {
+			failed.increment();
+		}
+	}
+
+	// claimed transfers that do not finish stay PROCESSING until the processing timeout
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		poller.shutdownNow();
+		workers.shutdown();
+		workers.awaitTermination(10, TimeUnit.SECONDS);
+	}
+}
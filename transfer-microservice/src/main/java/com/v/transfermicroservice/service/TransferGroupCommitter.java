@@ -0,0 +1,195 @@
+package com.v.transfermicroservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.v.transfermicroservice.error.TransferServiceException;
+import com.v.transfermicroservice.model.TransferRestModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+// transfer.processing.mode=group-commit: concurrent POST /transfers calls share transactions. A committer thread takes
+// the first queued transfer, waits up to max-wait-ms for more (at most max-items), and commits the group through
+// TransferService.transferBatch: one JPA and one Kafka transaction. Every caller of the group is answered when it
+// commits. Under load groups fill up before max-wait-ms, so throughput grows with concurrency while a request waits
+// at most max-wait-ms plus one commit.
+//
+// A group that fails on one of its transfers (a data integrity violation) is retried transfer by transfer, so one bad
+// transfer fails only its own caller. Any other failure (remote service error or timeout, open circuit breaker, Kafka)
+// would fail every transfer alike, the whole group fails at once instead of holding the committer for n more tries.
+//
+// Meters: transfer.group-commit.size (transfers per commit), transfer.group-commit.wait (time queued per transfer),
+// transfer.group-commit.commit (time per group commit), transfer.group-commit.fallbacks and
+// transfer.group-commit.rejected (queue full).
+@Component
+@ConditionalOnProperty(name = "transfer.processing.mode", havingValue = "group-commit")
+public class TransferGroupCommitter {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+
+	private final TransferService transferService;
+	private final BlockingQueue<PendingTransfer> queue;
+	private final long maxWaitNanos;
+	private final int maxItems;
+	private final List<Thread> committers = new ArrayList<>();
+	private volatile boolean running = true;
+
+	private final DistributionSummary groupSize;
+	private final Timer waitTimer;
+	private final Timer commitTimer;
+	private final Counter fallbacks;
+	private final Counter rejected;
+
+	public TransferGroupCommitter(TransferService transferService, MeterRegistry meterRegistry,
+								  @Value("${transfer.group-commit.max-wait-ms:5}") long maxWaitMs,
+								  @Value("${transfer.group-commit.max-items:100}") int maxItems,
+								  @Value("${transfer.group-commit.committers:2}") int committers,
+								  @Value("${transfer.group-commit.queue-capacity:10000}") int queueCapacity) {
+		this.transferService = transferService;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+		this.maxItems = maxItems;
+		this.groupSize = DistributionSummary.builder("transfer.group-commit.size").register(meterRegistry);
+		this.waitTimer = Timer.builder("transfer.group-commit.wait")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.commitTimer = Timer.builder("transfer.group-commit.commit")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.fallbacks = meterRegistry.counter("transfer.group-commit.fallbacks");
+		this.rejected = meterRegistry.counter("transfer.group-commit.rejected");
+		for (int i = 0; i < committers; i++) {
+			Thread committer = new Thread(this::run, "transfer-group-commit-" + i);
+			committer.setDaemon(true);
+			committer.start();
+			this.committers.add(committer);
+		}
+	}
+
+	// completes with true once the group holding this transfer commits, exceptionally when it cannot be committed
+	public CompletableFuture<Boolean> submit(TransferRestModel transferRestModel) {
+		PendingTransfer pendingTransfer = new PendingTransfer(transferRestModel, System.nanoTime(),
+				new CompletableFuture<>());
+		if (!running || !queue.offer(pendingTransfer)) {
+			rejected.increment();
+			pendingTransfer.result().completeExceptionally(
+					new TransferServiceException("Transfer not accepted, group commit queue is full"));
+		}
+		return pendingTransfer.result();
+	}
+
+	private void run() {
+		List<PendingTransfer> group = new ArrayList<>(maxItems);
+		while (running) {
+			try {
+				PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (group.size() < maxItems) {
+					// whatever is already queued is taken without waiting
+					if (queue.drainTo(group, maxItems - group.size()) > 0) {
+						continue;
+					}
+					long remaining = deadline - System.nanoTime();
+					PendingTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+					if (next == null) {
+						break;
+					}
+					group.add(next);
+				}
+				commit(group);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail(group, new TransferServiceException("Shutting down"));
+				return;
+			} catch (RuntimeException e) {
+				LOGGER.error("Group commit failed", e);
+				fail(group, e);
+			}
+			group.clear();
+		}
+	}
+
+	private void commit(List<PendingTransfer> group) {
+		long start = System.nanoTime();
+		for (PendingTransfer pendingTransfer : group) {
+			waitTimer.record(start - pendingTransfer.queuedAt(), TimeUnit.NANOSECONDS);
+		}
+		groupSize.record(group.size());
+
+		List<TransferRestModel> transferRestModels = new ArrayList<>(group.size());
+		for (PendingTransfer pendingTransfer : group) {
+			transferRestModels.add(pendingTransfer.transferRestModel());
+		}
+		try {
+			transferService.transferBatch(transferRestModels);
+		} catch (RuntimeException e) {
+			if (group.size() == 1 || !isTransferSpecific(e)) {
+				fail(group, e);
+				return;
+			}
+			fallbacks.increment();
+			LOGGER.warn("Group of {} transfers failed, committing them one by one: {}", group.size(), e.getMessage());
+			for (PendingTransfer pendingTransfer : group) {
+				try {
+					pendingTransfer.result().complete(transferService.transfer(pendingTransfer.transferRestModel()));
+				} catch (RuntimeException single) {
+					pendingTransfer.result().completeExceptionally(single);
+				}
+			}
+			return;
+		} finally {
+			commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		for (PendingTransfer pendingTransfer : group) {
+			pendingTransfer.result().complete(true);
+		}
+	}
+
+	private static boolean isTransferSpecific(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof DataIntegrityViolationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void fail(List<PendingTransfer> group, Throwable cause) {
+		for (PendingTransfer pendingTransfer : group) {
+			pendingTransfer.result().completeExceptionally(cause);
+		}
+	}
+
+	// the group in progress finishes, transfers still queued are failed
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		for (Thread committer : committers) {
+			committer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		List<PendingTransfer> left = new ArrayList<>();
+		queue.drainTo(left);
+		fail(left, new TransferServiceException("Shutting down"));
+	}
+
+	private record PendingTransfer(TransferRestModel transferRestModel, long queuedAt,
+								   CompletableFuture<Boolean> result) {
+	}
+}
@@ -1,7 +1,25 @@
 package com.v.transfermicroservice.service;
 
+import java.util.List;
+
 import com.v.transfermicroservice.model.TransferRestModel;
 
 public interface TransferService {
     public boolean transfer(TransferRestModel productPaymentRestModel);
+
+    // all transfers in one JPA and one Kafka transaction, at most transfer.batch.max-size of them
+    // (InvalidTransferBatchException otherwise); returns the transfer ids in request order
+    public List<String> transferBatch(List<TransferRestModel> transferRestModels);
+
+    // transfer.processing.mode=async: stores the transfer as PENDING and returns its id, PendingTransferProcessor
+    // verifies and publishes it later
+    public String accept(TransferRestModel transferRestModel);
+
+    // the remote verification, called outside any transaction; TransferRejectedException when the remote service
+    // turns the transfer down, any other exception may go away on a retry
+    public void verify(String transferId);
+
+    // marks the claimed transfer COMPLETED and publishes the withdrawal and deposit events in one transaction;
+    // TransferServiceException, and nothing published, when claimId no longer holds the PROCESSING claim
+    public void complete(String transferId, String claimId);
 }
@@ -1,8 +1,14 @@
 package com.v.transfermicroservice.service;
 
 import com.v.core.events.DepositRequestedEvent;
+import com.v.core.kafka.EventKeyStrategy;
+import com.v.core.kafka.PublishMetrics;
 import com.v.core.events.WithdrawalRequestedEvent;
+import com.v.core.resilience.CircuitBreaker;
 import com.v.transfermicroservice.entity.TransferEntity;
+import com.v.transfermicroservice.entity.TransferStatus;
+import com.v.transfermicroservice.error.InvalidTransferBatchException;
+import com.v.transfermicroservice.error.TransferRejectedException;
 import com.v.transfermicroservice.error.TransferServiceException;
 import com.v.transfermicroservice.model.TransferRestModel;
 import com.v.transfermicroservice.repository.TransferRepository;
@@ -14,13 +20,19 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.nio.file.FileAlreadyExistsException;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 
 @Service
@@ -33,12 +45,23 @@ public class TransferServiceImpl implements TransferService {
 
 	private TransferRepository transferRepository;
 
+	private PublishMetrics publishMetrics;
+
+	private CircuitBreaker circuitBreaker;
+
+	private EventKeyStrategy eventKeyStrategy;
+
 	public TransferServiceImpl(KafkaTemplate<String, Object> kafkaTemplate, Environment environment,
-							   RestTemplate restTemplate, TransferRepository transferRepository) {
+							   RestTemplate restTemplate, TransferRepository transferRepository,
+							   PublishMetrics publishMetrics, CircuitBreaker circuitBreaker,
+							   EventKeyStrategy eventKeyStrategy) {
 		this.kafkaTemplate = kafkaTemplate;
 		this.environment = environment;
 		this.restTemplate = restTemplate;
 		this.transferRepository=transferRepository;
+		this.publishMetrics = publishMetrics;
+		this.circuitBreaker = circuitBreaker;
+		this.eventKeyStrategy = eventKeyStrategy;
 	}
 
 	@Override
@@ -54,6 +77,8 @@ public class TransferServiceImpl implements TransferService {
 		TransferEntity transferEntity = new TransferEntity();
 		BeanUtils.copyProperties(transferRestModel, transferEntity);
 		transferEntity.setTransferId(UUID.randomUUID().toString());
+		// rolled back with everything else when a step below fails
+		transferEntity.setStatus(TransferStatus.COMPLETED);
 
 		try {
 
@@ -61,16 +86,14 @@ public class TransferServiceImpl implements TransferService {
 			transferRepository.save(transferEntity);
 
 			// 1st producer
-			kafkaTemplate.send(environment.getProperty("withdraw-money-topic", "withdraw-money-topic"),
-					withdrawalEvent);
-			LOGGER.info("Sent event to withdrawal topic.");
+			publish(environment.getProperty("withdraw-money-topic", "withdraw-money-topic"), withdrawalEvent);
 
 			// Business logic that causes and error
-			callRemoteServce();
+			// while the circuit breaker is open this throws CircuitBreakerOpenException without calling the service
+			circuitBreaker.execute(this::callRemoteServce);
 
 			// 2nd producer
-			kafkaTemplate.send(environment.getProperty("deposit-money-topic", "deposit-money-topic"), depositEvent);
-			LOGGER.info("Sent event to deposit topic");
+			publish(environment.getProperty("deposit-money-topic", "deposit-money-topic"), depositEvent);
 
 		} catch (Exception ex) {
 			LOGGER.error(ex.getMessage(), ex);
@@ -80,18 +103,128 @@ public class TransferServiceImpl implements TransferService {
 		return true;
 	}
 
-	private ResponseEntity<String> callRemoteServce() throws Exception {
+	/*
+	One commit for the whole batch: the inserts go out as JDBC batches (hibernate.jdbc.batch_size) and all 2 x n
+	events share one Kafka transaction, so the commit markers and log flushes are paid once per batch instead of once
+	per transfer. The remote service is called once per batch, it does not look at the individual transfers.
+	 */
+	@Override
+	@Transactional(value = "transactionManager" ,rollbackFor = {TransferServiceException.class, SQLException.class})
+	public List<String> transferBatch(List<TransferRestModel> transferRestModels) {
+		int maxBatchSize = environment.getProperty("transfer.batch.max-size", Integer.class, 1000);
+		if (transferRestModels.isEmpty() || transferRestModels.size() > maxBatchSize) {
+			throw new InvalidTransferBatchException("A batch needs 1 to " + maxBatchSize + " transfers, got "
+					+ transferRestModels.size());
+		}
+
+		List<TransferEntity> transferEntities = new ArrayList<>(transferRestModels.size());
+		List<String> transferIds = new ArrayList<>(transferRestModels.size());
+		for (TransferRestModel transferRestModel : transferRestModels) {
+			TransferEntity transferEntity = new TransferEntity();
+			BeanUtils.copyProperties(transferRestModel, transferEntity);
+			transferEntity.setTransferId(UUID.randomUUID().toString());
+			transferEntity.setStatus(TransferStatus.COMPLETED);
+			transferEntities.add(transferEntity);
+			transferIds.add(transferEntity.getTransferId());
+		}
+
+		String withdrawTopic = environment.getProperty("withdraw-money-topic", "withdraw-money-topic");
+		String depositTopic = environment.getProperty("deposit-money-topic", "deposit-money-topic");
+		try {
+			transferRepository.saveAll(transferEntities);
+
+			circuitBreaker.execute(this::callRemoteServce);
+
+			for (TransferRestModel transferRestModel : transferRestModels) {
+				publish(withdrawTopic, new WithdrawalRequestedEvent(transferRestModel.getSenderId(),
+						transferRestModel.getRecepientId(), transferRestModel.getAmount()));
+				publish(depositTopic, new DepositRequestedEvent(transferRestModel.getSenderId(),
+						transferRestModel.getRecepientId(), transferRestModel.getAmount()));
+			}
+		} catch (Exception ex) {
+			LOGGER.error(ex.getMessage(), ex);
+			throw new TransferServiceException(ex);
+		}
+
+		return transferIds;
+	}
+
+	// only the insert is inside the transaction, the request returns once it commits
+	@Override
+	@Transactional(value = "transactionManager")
+	public String accept(TransferRestModel transferRestModel) {
+		TransferEntity transferEntity = new TransferEntity();
+		BeanUtils.copyProperties(transferRestModel, transferEntity);
+		transferEntity.setTransferId(UUID.randomUUID().toString());
+		transferEntity.setStatus(TransferStatus.PENDING);
+		transferRepository.save(transferEntity);
+		return transferEntity.getTransferId();
+	}
+
+	// no DB connection or producer is held while waiting on the remote service. Only a 4xx is a rejection, a 503,
+	// another 5xx or an I/O error says nothing about the transfer and is thrown as is
+	@Override
+	public void verify(String transferId) {
+		try {
+			circuitBreaker.execute(this::callRemoteServce);
+		} catch (HttpClientErrorException e) {
+			throw new TransferRejectedException("Transfer " + transferId + " rejected: " + e.getStatusCode(), e);
+		}
+	}
+
+	@Override
+	@Transactional(value = "transactionManager", rollbackFor = TransferServiceException.class)
+	public void complete(String transferId, String claimId) {
+		TransferEntity transferEntity = transferRepository.findById(transferId)
+				.orElseThrow(() -> new TransferServiceException("Unknown transfer " + transferId));
+
+		// compare-and-set first: the row stays locked until the commit, a sweep cannot hand it to another worker
+		// while the events go out, and a worker whose claim was swept publishes nothing
+		if (transferRepository.updateClaimedStatus(transferId, claimId, TransferStatus.COMPLETED,
+				Instant.now()) == 0) {
+			throw new TransferServiceException("Transfer " + transferId + " is no longer claimed by " + claimId);
+		}
+
+		publish(environment.getProperty("withdraw-money-topic", "withdraw-money-topic"),
+				new WithdrawalRequestedEvent(transferEntity.getSenderId(), transferEntity.getRecepientId(),
+						transferEntity.getAmount()));
+		publish(environment.getProperty("deposit-money-topic", "deposit-money-topic"),
+				new DepositRequestedEvent(transferEntity.getSenderId(), transferEntity.getRecepientId(),
+						transferEntity.getAmount()));
+		// the Kafka transaction commits right after this one
+	}
+
+	private ResponseEntity<String> callRemoteServce() {
 		String requestUrl = "http://localhost:8082/response/200";
 		ResponseEntity<String> response = restTemplate.exchange(requestUrl, HttpMethod.GET, null, String.class);
 
 		if (response.getStatusCode().value() == HttpStatus.SERVICE_UNAVAILABLE.value()) {
-			throw new Exception("Destination Microservice not availble");
+			throw new TransferServiceException("Destination Microservice not availble");
 		}
 
-		if (response.getStatusCode().value() == HttpStatus.OK.value()) {
-			LOGGER.info("Received response from mock service: " + response.getBody());
+		if (response.getStatusCode().value() == HttpStatus.OK.value() && LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Received response from mock service: {}", response.getBody());
 		}
 		return response;
 	}
 
+	// latency, outcome and size are recorded from the producer callback, a sample of the sends is logged at debug
+	private void publish(String topic, Object event) {
+		long start = publishMetrics.start();
+		CompletableFuture<SendResult<String, Object>> future;
+		try {
+			future = kafkaTemplate.send(topic, eventKeyStrategy.keyFor(event), event);
+		} catch (RuntimeException e) {
+			publishMetrics.record(topic, start, null, e);
+			throw e;
+		}
+		future.whenComplete((sendResult, exception) -> {
+			publishMetrics.record(topic, start, sendResult == null ? null : sendResult.getRecordMetadata(), exception);
+			if (exception == null && LOGGER.isDebugEnabled() && publishMetrics.sampled()) {
+				LOGGER.debug("Sent {} Partition: {}, Topic: {}, Offset: {}", event.getClass().getSimpleName(),
+						sendResult.getRecordMetadata().partition(), topic, sendResult.getRecordMetadata().offset());
+			}
+		});
+	}
+
 }
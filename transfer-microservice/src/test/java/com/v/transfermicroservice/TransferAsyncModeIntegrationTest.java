@@ -0,0 +1,189 @@
+package com.v.transfermicroservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.transfermicroservice.entity.TransferEntity;
+import com.v.transfermicroservice.entity.TransferStatus;
+import com.v.transfermicroservice.error.TransferServiceException;
+import com.v.transfermicroservice.repository.TransferRepository;
+import com.v.transfermicroservice.service.TransferService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@EmbeddedKafka(partitions = 1, count = 1, controlledShutdown = true,
+        topics = {"withdraw-money-topic", "deposit-money-topic"})
+@TestPropertySource(properties = {
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "transfer.processing.mode=async",
+        // a transfer put back after a failed attempt stays PENDING for the rest of the test
+        "transfer.async.retry-backoff-ms=60000"
+})
+public class TransferAsyncModeIntegrationTest {
+
+    @MockitoBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TransferRepository transferRepository;
+
+    @Autowired
+    TransferService transferService;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Test
+    public void testTransfer_whenAsync_acceptsAtOnceAndPublishesInTheBackground() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("200"));
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("transfer-test", "false",
+                embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer();
+        embeddedKafkaBroker.consumeFromAllEmbeddedTopics(consumer);
+
+        // Act
+        String transferId = accept();
+
+        // Assert
+        TransferEntity transfer = await(transferId, t -> t.getStatus() == TransferStatus.COMPLETED);
+        assertEquals(TransferStatus.COMPLETED, transfer.getStatus());
+        assertEquals(2, KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), 2).count());
+        consumer.close();
+    }
+
+    @Test
+    public void testTransfer_whenRemoteServiceUnavailable_putsTheTransferBackToPending() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("503"));
+
+        // Act
+        String transferId = accept();
+
+        // Assert
+        TransferEntity transfer = await(transferId, t -> t.getAttempts() == 1);
+        assertEquals(TransferStatus.PENDING, transfer.getStatus());
+        assertEquals(1, transfer.getAttempts());
+    }
+
+    @Test
+    public void testTransfer_whenRemoteServiceRejectsIt_failsTheTransfer() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        // Act
+        String transferId = accept();
+
+        // Assert
+        TransferEntity transfer = await(transferId, t -> t.getStatus() == TransferStatus.FAILED);
+        assertEquals(TransferStatus.FAILED, transfer.getStatus());
+        assertEquals(0, transfer.getAttempts());
+    }
+
+    @Test
+    public void testComplete_whenClaimWasTakenOver_publishesNothing() {
+
+        // Arrange
+        // PROCESSING under a claim other than the completing worker's, as after a sweep and a new claim
+        TransferEntity transfer = new TransferEntity(UUID.randomUUID().toString(), "s-1", "r-1",
+                new BigDecimal(25));
+        transfer.setStatus(TransferStatus.PROCESSING);
+        transferRepository.save(transfer);
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("stale-claim-test", "false",
+                embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer();
+        // only what is published from here on, not the other tests' events
+        embeddedKafkaBroker.consumeFromAllEmbeddedTopics(consumer, true);
+
+        // Act
+        assertThrows(TransferServiceException.class,
+                () -> transferService.complete(transfer.getTransferId(), "swept-claim"));
+
+        // Assert
+        assertEquals(TransferStatus.PROCESSING,
+                transferRepository.findById(transfer.getTransferId()).orElseThrow().getStatus());
+        assertEquals(0, KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(2)).count());
+        consumer.close();
+    }
+
+    private String accept() throws Exception {
+        MvcResult pending = mockMvc.perform(post("/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"senderId\":\"s-1\",\"recepientId\":\"r-1\",\"amount\":25}"))
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        return (String) objectMapper.readValue(response, Map.class).get("transferId");
+    }
+
+    // the transfer once it matches, or as it is after 20 seconds
+    private TransferEntity await(String transferId, Predicate<TransferEntity> condition) throws InterruptedException {
+        TransferEntity transfer = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            transfer = transferRepository.findById(transferId).orElseThrow();
+            if (condition.test(transfer)) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        return transfer;
+    }
+}
@@ -0,0 +1,124 @@
+package com.v.transfermicroservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.v.transfermicroservice.entity.TransferStatus;
+import com.v.transfermicroservice.repository.TransferRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@EmbeddedKafka(partitions = 1, count = 1, controlledShutdown = true,
+        topics = {"withdraw-money-topic", "deposit-money-topic"})
+@TestPropertySource(properties = {
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "transfer.batch.max-size=3"
+})
+public class TransferBatchIntegrationTest {
+
+    private static final String TRANSFER = "{\"senderId\":\"s-1\",\"recepientId\":\"r-1\",\"amount\":25}";
+
+    @MockitoBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TransferRepository transferRepository;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTransferBatch_storesAndPublishesEveryTransferInOneTransaction() throws Exception {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("200"));
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("transfer-batch-test", "false",
+                embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer();
+        embeddedKafkaBroker.consumeFromAllEmbeddedTopics(consumer);
+
+        // Act
+        String response = mockMvc.perform(post("/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + TRANSFER + "," + TRANSFER + "," + TRANSFER + "]"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        List<String> transferIds = (List<String>) objectMapper.readValue(response, Map.class).get("transferIds");
+        assertEquals(3, transferIds.size());
+        for (String transferId : transferIds) {
+            assertEquals(TransferStatus.COMPLETED, transferRepository.findById(transferId).orElseThrow().getStatus());
+        }
+        ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), 6);
+        assertEquals(6, records.count());
+        // keyed by the account the event changes
+        for (ConsumerRecord<String, String> record : records) {
+            assertEquals(record.topic().equals("withdraw-money-topic") ? "s-1" : "r-1", record.key());
+        }
+        verify(restTemplate, times(1)).exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class));
+        consumer.close();
+    }
+
+    @Test
+    public void testTransferBatch_whenLargerThanMaxSize_rejectsItWithoutStoringAnything() throws Exception {
+
+        // Arrange
+        long stored = transferRepository.count();
+
+        // Act
+        mockMvc.perform(post("/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + TRANSFER + "," + TRANSFER + "," + TRANSFER + "," + TRANSFER + "]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("A batch needs 1 to 3 transfers, got 4"));
+
+        // Assert
+        assertEquals(stored, transferRepository.count());
+    }
+}
@@ -0,0 +1,184 @@
+package com.v.transfermicroservice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import com.v.transfermicroservice.model.TransferRestModel;
+import com.v.transfermicroservice.service.TransferGroupCommitter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.RestTemplate;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@EmbeddedKafka(partitions = 1, count = 1, controlledShutdown = true,
+        topics = {"withdraw-money-topic", "deposit-money-topic"})
+@TestPropertySource(properties = {
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "transfer.processing.mode=group-commit",
+        "transfer.group-commit.max-wait-ms=50",
+        "transfer.group-commit.committers=1"
+})
+public class TransferGroupCommitIntegrationTest {
+
+    @MockitoBean
+    RestTemplate restTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    TransferGroupCommitter groupCommitter;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @BeforeEach
+    public void setUp() {
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("200"));
+    }
+
+    @Test
+    public void testSubmit_whenTransfersArriveTogether_commitsThemInSharedTransactions() {
+
+        // Arrange
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("transfer-group-test", "false",
+                embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer();
+        embeddedKafkaBroker.consumeFromAllEmbeddedTopics(consumer);
+        long groupsBefore = meterRegistry.get("transfer.group-commit.size").summary().count();
+
+        // Act
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(groupCommitter.submit(transfer("group-" + i)));
+        }
+
+        // Assert
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.join());
+        }
+        long groups = meterRegistry.get("transfer.group-commit.size").summary().count() - groupsBefore;
+        assertTrue(groups < 20, "20 transfers in " + groups + " commits");
+        int published = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (published < 40 && System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                if (record.value().contains("\"senderId\":\"group-")) {
+                    published++;
+                }
+            }
+        }
+        assertEquals(40, published);
+        consumer.close();
+    }
+
+    @Test
+    public void testSubmit_whenOneTransferOfTheGroupIsInvalid_failsOnlyThatOne() {
+
+        // Arrange
+        double fallbacksBefore = meterRegistry.get("transfer.group-commit.fallbacks").counter().count();
+
+        // Act
+        CompletableFuture<Boolean> before = groupCommitter.submit(transfer("s-1"));
+        CompletableFuture<Boolean> invalid = groupCommitter.submit(transfer(null));
+        CompletableFuture<Boolean> after = groupCommitter.submit(transfer("s-2"));
+
+        // Assert
+        assertTrue(before.join());
+        assertTrue(after.join());
+        assertThrows(CompletionException.class, invalid::join);
+        assertEquals(fallbacksBefore + 1, meterRegistry.get("transfer.group-commit.fallbacks").counter().count());
+    }
+
+    @Test
+    public void testSubmit_whenRemoteServiceUnavailable_failsTheGroupWithoutFallback() {
+
+        // Arrange
+        when(restTemplate.exchange(anyString(), any(HttpMethod.class), isNull(), eq(String.class)))
+                .thenReturn(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("503"));
+        double fallbacksBefore = meterRegistry.get("transfer.group-commit.fallbacks").counter().count();
+
+        // Act
+        List<CompletableFuture<Boolean>> results = List.of(groupCommitter.submit(transfer("s-1")),
+                groupCommitter.submit(transfer("s-2")), groupCommitter.submit(transfer("s-3")));
+
+        // Assert
+        for (CompletableFuture<Boolean> result : results) {
+            assertThrows(CompletionException.class, result::join);
+        }
+        assertEquals(fallbacksBefore, meterRegistry.get("transfer.group-commit.fallbacks").counter().count());
+    }
+
+    @Test
+    public void testTransfer_whenGroupCommitMode_answersOnceTheGroupCommits() throws Exception {
+
+        // Act
+        // the request thread is released until the group commits
+        MvcResult pending = mockMvc.perform(post("/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"senderId\":\"s-1\",\"recepientId\":\"r-1\",\"amount\":25}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+    }
+
+    private static TransferRestModel transfer(String senderId) {
+        TransferRestModel transferRestModel = new TransferRestModel();
+        transferRestModel.setSenderId(senderId);
+        transferRestModel.setRecepientId("r-1");
+        transferRestModel.setAmount(new BigDecimal("25"));
+        return transferRestModel;
+    }
+}
@@ -1,20 +1,27 @@
 package com.v.withdrawl_microservice.config;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.v.core.error.NotRetryableException;
 import com.v.core.error.RetryableException;
+import com.v.core.kafka.AdaptiveConcurrencyController;
+import com.v.core.serialization.ContentTypeDelegatingDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
@@ -41,7 +48,9 @@ public class KafkaConsumerConfiguration {
 				environment.getProperty("spring.kafka.consumer.bootstrap-servers"));
 		config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
 		config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-		config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+		// binary or JSON, decided per record by its content-type header
+		config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, ContentTypeDelegatingDeserializer.class);
+		config.put(ContentTypeDelegatingDeserializer.JSON_DELEGATE, JsonDeserializer.class);
 		config.put(ConsumerConfig.GROUP_ID_CONFIG, environment.getProperty("spring.kafka.consumer.group-id"));
 		config.put(JsonDeserializer.TRUSTED_PACKAGES,
 				environment.getProperty("spring.kafka.consumer.properties.spring.json.trusted.packages"));
@@ -73,6 +82,27 @@ public class KafkaConsumerConfiguration {
 		return factory;
 	}
 
+	// scales the listener containers between min-concurrency and the partition count of their topics,
+	// from consumer group lag and how fast it drains (see AdaptiveConcurrencyController)
+	@Bean
+	@ConditionalOnProperty(name = "kafka.listener.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+	AdaptiveConcurrencyController adaptiveConcurrencyController(KafkaListenerEndpointRegistry registry,
+			MeterRegistry meterRegistry) {
+		return new AdaptiveConcurrencyController(registry,
+				Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+						environment.getProperty("spring.kafka.consumer.bootstrap-servers")),
+				meterRegistry,
+				Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.interval-ms", Long.class, 10000L)),
+				environment.getProperty("kafka.listener.adaptive.min-concurrency", Integer.class, 1),
+				environment.getProperty("kafka.listener.adaptive.max-concurrency", Integer.class, 3),
+				environment.getProperty("kafka.listener.adaptive.scale-up-lag", Long.class, 1000L),
+				environment.getProperty("kafka.listener.adaptive.scale-down-lag", Long.class, 10L),
+				Duration.ofSeconds(environment.getProperty("kafka.listener.adaptive.target-drain-seconds",
+						Long.class, 60L)),
+				environment.getProperty("kafka.listener.adaptive.idle-checks", Integer.class, 6),
+				Duration.ofMillis(environment.getProperty("kafka.listener.adaptive.cooldown-ms", Long.class, 60000L)));
+	}
+
 	@Bean
 	KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory) {
 		return new KafkaTemplate<>(producerFactory);